@@ -0,0 +1,248 @@
+/*
+ * AuctionDepth.java
+ */
+package book;
+
+import constants.BookSide;
+import java.util.Arrays;
+
+/**
+ * This class keeps the limit price depth of both sides of a book in PREOPEN
+ * together with the cumulative volume of each level, so the indicative
+ * opening price can be found again after each change without copying or
+ * summing the book.<br> Each side holds its levels in arrays ordered from the
+ * worst price to the best, with the volume of each level and the total volume
+ * of that level and every worse one. Most changes are near the best price, at
+ * the end of the arrays, so setting the volume of a level only moves and adds
+ * to the few entries after it. The clearing price is then found the same way
+ * as UncrossingAuction does, reading only the levels where the two sides
+ * overlap. Market priced entries are not kept here.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+final class AuctionDepth {
+
+    /**
+     * Buy side levels.
+     */
+    private final Levels buys = new Levels(BookSide.BUY);
+    /**
+     * Sell side levels.
+     */
+    private final Levels sells = new Levels(BookSide.SELL);
+    /**
+     * Clearing price in cents found by the last call to uncross.
+     */
+    private long price;
+    /**
+     * Volume that trades at the clearing price found by the last call to
+     * uncross, 0 if nothing can trade.
+     */
+    private long volume;
+
+    /**
+     * Package-visible construction method to create depth with no levels.
+     */
+    AuctionDepth() {
+    }
+
+    /**
+     * This method will set the volume resting at a limit price on one side,
+     * adding the level if it is new and removing it if the volume is 0.
+     *
+     * @param side of book
+     * @param cents limit price in cents
+     * @param levelVolume total volume now at the price
+     */
+    void set(BookSide side, long cents, long levelVolume) {
+        ((side == BookSide.BUY) ? buys : sells).set(cents, levelVolume);
+    }
+
+    /**
+     * This method will find the clearing price and volume of the depth, read
+     * afterwards with getPrice and getVolume. Ties are broken the same way as
+     * in UncrossingAuction.
+     */
+    void uncross() {
+        price = 0;
+        volume = 0;
+        if (buys.size == 0 || sells.size == 0) {
+            return;
+        }
+        long bestBid = buys.prices[buys.size - 1];
+        long bestAsk = sells.prices[sells.size - 1];
+        if (bestBid < bestAsk) {
+            return;
+        }
+        long buyTotal = buys.cumulative[buys.size - 1];
+        long sellTotal = sells.cumulative[sells.size - 1];
+        long bestSurplus = 0;
+        // buy levels from bestAsk up, sell levels from bestAsk up to bestBid
+        int b = buys.indexOf(bestAsk);
+        int s = sells.size - 1;
+        while (b < buys.size || (s >= 0 && sells.prices[s] <= bestBid)) {
+            long cents;
+            if (b >= buys.size) {
+                cents = sells.prices[s];
+            } else if (s < 0 || sells.prices[s] > bestBid) {
+                cents = buys.prices[b];
+            } else {
+                cents = Math.min(buys.prices[b], sells.prices[s]);
+            }
+            long demand = buyTotal - ((b > 0) ? buys.cumulative[b - 1] : 0);
+            while (b < buys.size && buys.prices[b] <= cents) {
+                b++;
+            }
+            while (s >= 0 && sells.prices[s] <= cents) {
+                s--;
+            }
+            long supply = sellTotal - ((s >= 0) ? sells.cumulative[s] : 0);
+            long executable = Math.min(demand, supply);
+            long surplus = demand - supply;
+            if (UncrossingAuction.isBetter(executable, surplus, volume, bestSurplus)) {
+                price = cents;
+                volume = executable;
+                bestSurplus = surplus;
+            }
+        }
+    }
+
+    /**
+     * Returns the clearing price in cents found by the last call to uncross,
+     * only meaningful if getVolume is more than 0.
+     *
+     * @return clearing price in cents
+     */
+    long getPrice() {
+        return price;
+    }
+
+    /**
+     * Returns the volume that trades on each side at the clearing price found
+     * by the last call to uncross.
+     *
+     * @return volume
+     */
+    long getVolume() {
+        return volume;
+    }
+
+    /**
+     * This class holds the levels of one side, worst price first.
+     */
+    private static final class Levels {
+
+        /**
+         * Side of book.
+         */
+        private final BookSide side;
+        /**
+         * Price of each level in cents.
+         */
+        private long[] prices = new long[16];
+        /**
+         * Volume of each level.
+         */
+        private long[] volumes = new long[16];
+        /**
+         * Volume of each level and every worse level.
+         */
+        private long[] cumulative = new long[16];
+        /**
+         * Number of levels.
+         */
+        private int size;
+
+        /**
+         * Private construction method to create a side with no levels.
+         *
+         * @param side of book
+         */
+        private Levels(BookSide side) {
+            this.side = side;
+        }
+
+        /**
+         * Private method to set the volume at a price, adding or removing the
+         * level as needed and updating the cumulative volume of the level and
+         * every better one.
+         *
+         * @param cents limit price in cents
+         * @param levelVolume total volume now at the price
+         */
+        private void set(long cents, long levelVolume) {
+            int i = indexOf(cents);
+            boolean found = i < size && prices[i] == cents;
+            long delta;
+            if (found) {
+                delta = levelVolume - volumes[i];
+                if (levelVolume == 0) {
+                    System.arraycopy(prices, i + 1, prices, i, size - i - 1);
+                    System.arraycopy(volumes, i + 1, volumes, i, size - i - 1);
+                    System.arraycopy(cumulative, i + 1, cumulative, i, size - i - 1);
+                    size--;
+                } else {
+                    volumes[i] = levelVolume;
+                    cumulative[i] += delta;
+                    i++;
+                }
+            } else {
+                if (levelVolume == 0) {
+                    return;
+                }
+                if (size == prices.length) {
+                    prices = Arrays.copyOf(prices, size * 2);
+                    volumes = Arrays.copyOf(volumes, size * 2);
+                    cumulative = Arrays.copyOf(cumulative, size * 2);
+                }
+                System.arraycopy(prices, i, prices, i + 1, size - i);
+                System.arraycopy(volumes, i, volumes, i + 1, size - i);
+                System.arraycopy(cumulative, i, cumulative, i + 1, size - i);
+                size++;
+                delta = levelVolume;
+                prices[i] = cents;
+                volumes[i] = levelVolume;
+                cumulative[i] = ((i > 0) ? cumulative[i - 1] : 0) + levelVolume;
+                i++;
+            }
+            for (; i < size; i++) {
+                cumulative[i] += delta;
+            }
+        }
+
+        /**
+         * Private method to return the index of the first level whose price
+         * is at least as good as the price given, or size if there is none.
+         *
+         * @param cents limit price in cents
+         * @return index of level
+         */
+        private int indexOf(long cents) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (isAtLeastAsGood(prices[mid], cents)) {
+                    high = mid;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * Private method to decide if a price is at least as good for this
+         * side as another.
+         *
+         * @param cents price in cents
+         * @param other price in cents compared with
+         * @return true if cents is as good or better
+         */
+        private boolean isAtLeastAsGood(long cents, long other) {
+            return (side == BookSide.BUY) ? cents >= other : cents <= other;
+        }
+    }
+}
+//end of file
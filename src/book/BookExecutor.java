@@ -0,0 +1,193 @@
+/*
+ * BookExecutor.java
+ */
+package book;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class runs product book commands on a fixed set of single threaded
+ * workers.<br> Each product is pinned to one worker when it is created, so all
+ * commands for a product run one at a time on the same thread while different
+ * products are matched in parallel.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+class BookExecutor {
+
+    /**
+     * Single threaded workers, one per shard.
+     */
+    private final ThreadPoolExecutor[] workers;
+    /**
+     * Thread owned by each worker.
+     */
+    private final Thread[] threads;
+    /**
+     * Worker index each product is pinned to, indexed by instrument id, or -1
+     * if not pinned. Replaced with a larger copy when a product does not fit.
+     */
+    private volatile int[] pinned = new int[0];
+    /**
+     * Next worker to pin a product to.
+     */
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Package-visible construction method to create and start the workers.
+     *
+     * @param count number of workers
+     */
+    BookExecutor(int count) {
+        workers = new ThreadPoolExecutor[count];
+        threads = new Thread[count];
+        for (int i = 0; i < count; i++) {
+            final int shard = i;
+            workers[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "book-worker-" + shard);
+                    t.setDaemon(true);
+                    threads[shard] = t;
+                    return t;
+                }
+            });
+            workers[i].prestartAllCoreThreads();
+        }
+    }
+
+    /**
+     * Returns the number of workers.
+     *
+     * @return number of workers
+     */
+    int size() {
+        return workers.length;
+    }
+
+    /**
+     * Returns true if the thread is one of the workers.
+     *
+     * @param t thread
+     * @return true if a worker
+     */
+    boolean isWorker(Thread t) {
+        for (Thread worker : threads) {
+            if (worker == t) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * This method will pin a product to the next worker, round robin, so
+     * products are spread evenly across the workers.
+     *
+     * @param id instrument id of product
+     */
+    synchronized void pin(int id) {
+        int[] p = pinned;
+        if (id >= p.length) {
+            int oldLength = p.length;
+            p = Arrays.copyOf(p, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(p, oldLength, p.length, -1);
+        } else if (p[id] >= 0) {
+            return;
+        }
+        p[id] = (next.getAndIncrement() & Integer.MAX_VALUE) % workers.length;
+        pinned = p;
+    }
+
+    /**
+     * This method will run the task on the worker that owns the product and
+     * wait for its result. A task submitted from the owning worker itself is
+     * run directly.
+     *
+     * @param id instrument id of product, or NONE
+     * @param task command to run
+     * @return result of task
+     * @throws Exception thrown by the task
+     */
+    <T> T execute(int id, Callable<T> task) throws Exception {
+        int shard = shardOf(id);
+        if (Thread.currentThread() == threads[shard]) {
+            return task.call();
+        }
+        return await(workers[shard].submit(task));
+    }
+
+    /**
+     * This method will queue the task on the worker that owns the product
+     * without waiting for it.
+     *
+     * @param id instrument id of product, or NONE
+     * @param task command to run
+     * @return future result of task
+     */
+    <T> Future<T> submit(int id, Callable<T> task) {
+        return workers[shardOf(id)].submit(task);
+    }
+
+    /**
+     * This method will wait for a queued task and rethrow whatever the task
+     * threw.
+     *
+     * @param f future result of task
+     * @return result of task
+     * @throws Exception thrown by the task
+     */
+    static <T> T await(Future<T> f) throws Exception {
+        try {
+            return f.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * This method will stop the workers once every queued task has run.
+     *
+     * @throws InterruptedException
+     */
+    void shutdown() throws InterruptedException {
+        for (ThreadPoolExecutor w : workers) {
+            w.shutdown();
+        }
+        for (ThreadPoolExecutor w : workers) {
+            w.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Private method to find the worker that owns the product. Commands for
+     * unknown products all go to the first worker so their errors are still
+     * reported in order.
+     *
+     * @param id instrument id of product, or NONE
+     * @return worker index
+     */
+    private int shardOf(int id) {
+        int[] p = pinned;
+        if (id >= 0 && id < p.length && p[id] >= 0) {
+            return p[id];
+        }
+        return 0;
+    }
+}
+//end of file
@@ -0,0 +1,212 @@
+/*
+ * FillBuffer.java
+ */
+package book;
+
+import price.Price;
+import publishers.FillMessage;
+import publishers.MessagePublisher;
+import tradable.Tradable;
+
+/**
+ * This class is a reusable buffer of the fills produced while one tradable
+ * trades against a book side.<br> Fill records are held in preallocated
+ * parallel arrays that are cleared and reused for every trade, so the matching
+ * path does not allocate per fill. When the buffer is published one fill
+ * message, made the first time, is set to each fill in turn and sent, so
+ * publishing does not allocate either; a user keeps what it needs from the
+ * message before acceptMessage returns.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public final class FillBuffer {
+
+    /**
+     * Initial number of fill records the buffer can hold before growing.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * Tradable that was filled, per record.
+     */
+    private Tradable[] tradables = new Tradable[INITIAL_CAPACITY];
+    /**
+     * Fill price, per record.
+     */
+    private Price[] prices = new Price[INITIAL_CAPACITY];
+    /**
+     * Filled volume, per record.
+     */
+    private int[] volumes = new int[INITIAL_CAPACITY];
+    /**
+     * Volume left on the tradable after the fill, per record.
+     */
+    private int[] remainders = new int[INITIAL_CAPACITY];
+    /**
+     * Number of records in use.
+     */
+    private int count;
+    /**
+     * Record of the incoming tradable's most recent fill, or -1 if none.
+     */
+    private int aggressorRecord = -1;
+
+    /**
+     * Fill message reused for every fill published, or null until the first.
+     */
+    private FillMessage message;
+
+    /**
+     * Package-visible construction method to create an empty buffer.
+     */
+    FillBuffer() {
+    }
+
+    /**
+     * Returns true if the buffer holds no fills.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Returns the number of fill records in the buffer.
+     *
+     * @return number of fills
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the price of the most recent fill, or null if empty.
+     *
+     * @return last fill price
+     */
+    public Price getLastPrice() {
+        if (count == 0) {
+            return null;
+        }
+        return prices[count - 1];
+    }
+
+    /**
+     * Returns the volume of the most recent fill, or 0 if empty.
+     *
+     * @return last fill volume
+     */
+    public int getLastVolume() {
+        if (count == 0) {
+            return 0;
+        }
+        return volumes[count - 1];
+    }
+
+    /**
+     * Package visible method to drop all records so the buffer can be reused.
+     */
+    void clear() {
+        for (int i = 0; i < count; i++) {
+            tradables[i] = null;
+            prices[i] = null;
+        }
+        count = 0;
+        aggressorRecord = -1;
+    }
+
+    /**
+     * Package visible method to record a fill of a tradable resting in the
+     * book.
+     *
+     * @param t tradable filled
+     * @param p fill price
+     * @param volume filled
+     * @param remainder volume left on the tradable
+     */
+    void addFill(Tradable t, Price p, int volume, int remainder) {
+        append(t, p, volume, remainder);
+    }
+
+    /**
+     * Package visible method to record a fill of the incoming tradable.
+     * Consecutive fills at the same price are merged into one record.
+     *
+     * @param t incoming tradable
+     * @param p fill price
+     * @param volume filled
+     * @param remainder volume left on the tradable
+     */
+    void addAggressorFill(Tradable t, Price p, int volume, int remainder) {
+        if (aggressorRecord >= 0 && tradables[aggressorRecord] == t && samePrice(prices[aggressorRecord], p)) {
+            volumes[aggressorRecord] += volume;
+            remainders[aggressorRecord] = remainder;
+        } else {
+            aggressorRecord = append(t, p, volume, remainder);
+        }
+    }
+
+    /**
+     * Package visible method to send a fill message for every record to the
+     * message publisher, in the order the fills happened.
+     *
+     * @throws Exception
+     */
+    void publish() throws Exception {
+        for (int i = 0; i < count; i++) {
+            Tradable t = tradables[i];
+            if (message == null) {
+                message = new FillMessage(t.getUser(), t.getProduct(), prices[i], volumes[i], remainders[i], t.getSide(), t.getId());
+            } else {
+                message.setFill(t.getUser(), t.getProduct(), prices[i], volumes[i], remainders[i], t.getSide(), t.getId());
+            }
+            MessagePublisher.getInstance().publishFill(message);
+        }
+    }
+
+    /**
+     * Private method to append a record, growing the arrays if they are full.
+     *
+     * @return index of new record
+     */
+    private int append(Tradable t, Price p, int volume, int remainder) {
+        if (count == tradables.length) {
+            grow();
+        }
+        tradables[count] = t;
+        prices[count] = p;
+        volumes[count] = volume;
+        remainders[count] = remainder;
+        return count++;
+    }
+
+    /**
+     * Private method to double the capacity of the buffer.
+     */
+    private void grow() {
+        int capacity = tradables.length * 2;
+        Tradable[] newTradables = new Tradable[capacity];
+        Price[] newPrices = new Price[capacity];
+        int[] newVolumes = new int[capacity];
+        int[] newRemainders = new int[capacity];
+        System.arraycopy(tradables, 0, newTradables, 0, count);
+        System.arraycopy(prices, 0, newPrices, 0, count);
+        System.arraycopy(volumes, 0, newVolumes, 0, count);
+        System.arraycopy(remainders, 0, newRemainders, 0, count);
+        tradables = newTradables;
+        prices = newPrices;
+        volumes = newVolumes;
+        remainders = newRemainders;
+    }
+
+    /**
+     * Private method to compare two prices by value.
+     *
+     * @return true if both prices are the same
+     */
+    private boolean samePrice(Price a, Price b) {
+        return a.isMarket() == b.isMarket() && a.compareTo(b) == 0;
+    }
+}
+//end of file
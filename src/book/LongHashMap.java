@@ -0,0 +1,193 @@
+/*
+ * LongHashMap.java
+ */
+package book;
+
+import java.util.Arrays;
+
+/**
+ * This class is a hash map from primitive long keys to objects, so tradable
+ * ids can be looked up without boxing.<br> Entries live in two parallel
+ * arrays probed linearly, and removal shifts later entries back so no
+ * tombstones are left. Keys must be positive; 0 marks an empty slot.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+final class LongHashMap<V> {
+
+    /**
+     * Number of slots a new map starts with, a power of two.
+     */
+    private static final int INITIAL_CAPACITY = 64;
+    /**
+     * Key in each slot, or 0 if empty.
+     */
+    private long[] keys = new long[INITIAL_CAPACITY];
+    /**
+     * Value in each slot.
+     */
+    private Object[] values = new Object[INITIAL_CAPACITY];
+    /**
+     * Mask from hash to slot.
+     */
+    private int mask = INITIAL_CAPACITY - 1;
+    /**
+     * Number of entries.
+     */
+    private int size;
+
+    /**
+     * Package-visible construction method to create an empty map.
+     */
+    LongHashMap() {
+    }
+
+    /**
+     * Returns the number of entries.
+     *
+     * @return number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns true if the map holds no entries.
+     *
+     * @return true if empty
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the value for the key, or null if there is none.
+     *
+     * @param key positive key
+     * @return value or null
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        if (key <= 0) {
+            return null;
+        }
+        for (int i = slot(key); keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sets the value for the key and returns the value it replaced, or null.
+     *
+     * @param key positive key
+     * @param value to store
+     * @return previous value or null
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Key must be positive: " + key);
+        }
+        int i = slot(key);
+        while (keys[i] != 0) {
+            if (keys[i] == key) {
+                V old = (V) values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size > (keys.length >> 1) + (keys.length >> 2)) {
+            grow();
+        }
+        return null;
+    }
+
+    /**
+     * Removes the entry for the key and returns its value, or null if there
+     * was none.
+     *
+     * @param key positive key
+     * @return removed value or null
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        if (key <= 0) {
+            return null;
+        }
+        int i = slot(key);
+        while (keys[i] != key) {
+            if (keys[i] == 0) {
+                return null;
+            }
+            i = (i + 1) & mask;
+        }
+        V old = (V) values[i];
+        int gap = i;
+        int j = (i + 1) & mask;
+        while (keys[j] != 0) {
+            int home = slot(keys[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                keys[gap] = keys[j];
+                values[gap] = values[j];
+                gap = j;
+            }
+            j = (j + 1) & mask;
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+        size--;
+        return old;
+    }
+
+    /**
+     * Removes every entry.
+     */
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, 0);
+            Arrays.fill(values, null);
+            size = 0;
+        }
+    }
+
+    /**
+     * Private method to map a key to its home slot.
+     *
+     * @param key positive key
+     * @return slot index
+     */
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Private method to double the number of slots and move every entry to its
+     * slot in the new arrays.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        mask = keys.length - 1;
+        for (int k = 0; k < oldKeys.length; k++) {
+            if (oldKeys[k] != 0) {
+                int i = slot(oldKeys[k]);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[k];
+                values[i] = oldValues[k];
+            }
+        }
+    }
+}
+//end of file
@@ -0,0 +1,84 @@
+/*
+ * PriceLadder.java
+ */
+package book;
+
+import price.Price;
+
+/**
+ * This is a package visible interface which governs how one side of a book
+ * keeps its limit price levels ordered from best to worst price.<br> Market
+ * priced entries are held by the book side in a queue of their own.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+interface PriceLadder {
+
+    /**
+     * Returns true if there are no levels in the ladder.
+     *
+     * @return true if empty
+     */
+    public boolean isEmpty();
+
+    /**
+     * Returns the number of price levels in the ladder.
+     *
+     * @return number of levels
+     */
+    public int size();
+
+    /**
+     * Returns the best price in the ladder or null if empty.
+     *
+     * @return best price
+     */
+    public Price bestPrice();
+
+    /**
+     * Returns the level at the best price or null if empty.
+     *
+     * @return level at best price
+     */
+    public PriceLevel bestLevel();
+
+    /**
+     * Returns the next level after the given one, going from best to worst, or
+     * null if it is the worst.
+     *
+     * @param level in the ladder
+     * @return next worse level
+     */
+    public PriceLevel nextLevel(PriceLevel level);
+
+    /**
+     * Returns the level at the price or null if there is no such level.
+     *
+     * @param p price
+     * @return level at price
+     */
+    public PriceLevel get(Price p);
+
+    /**
+     * Returns the level at the price, creating a new level if needed.
+     *
+     * @param p price
+     * @return level at price
+     */
+    public PriceLevel getOrCreate(Price p);
+
+    /**
+     * Removes the level at the price if present.
+     *
+     * @param p price
+     * @return true if a level was removed
+     */
+    public boolean remove(Price p);
+
+    /**
+     * Removes every level from the ladder.
+     */
+    public void clear();
+}
+//end of file
@@ -0,0 +1,40 @@
+/*
+ * PriceLadderFactory.java
+ */
+package book;
+
+import constants.BookSide;
+import constants.BookType;
+import exceptions.ExceptionHandler;
+
+/**
+ * This is a package visible class which implements the factory design pattern
+ * and creates the price ladder for a side of a product book.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+class PriceLadderFactory {
+
+    /**
+     * Package visible method to make and return a price ladder of the given
+     * type for a book side.
+     *
+     * @param side of book
+     * @param type of book
+     * @return PriceLadder
+     * @throws Exception
+     */
+    static PriceLadder makePriceLadder(BookSide side, BookType type) throws Exception {
+        String thisClass = "book.PriceLadderFactory#makePriceLadder.";
+        if (ExceptionHandler.checkObject(side, thisClass) && ExceptionHandler.checkObject(type, thisClass)) {
+            if (type == BookType.TICK_ARRAY) {
+                return new TickPriceLadder(side);
+            }
+            return new SortedPriceLadder(side);
+        } else {
+            return null;
+        }
+    }
+}
+//end of file
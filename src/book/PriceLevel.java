@@ -0,0 +1,264 @@
+/*
+ * PriceLevel.java
+ */
+package book;
+
+import price.Price;
+import tradable.Tradable;
+
+/**
+ * This class holds every tradable resting at one price on one side of a book
+ * in a first-in first-out queue.<br> The queue is an intrusive doubly linked
+ * list so that the head can be popped and any entry unlinked by its node in
+ * constant time, and the level keeps a running total of remaining volume.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+class PriceLevel {
+
+    /**
+     * Price of this level.
+     */
+    private final Price price;
+    /**
+     * Oldest entry, first to trade.
+     */
+    private Node head;
+    /**
+     * Newest entry.
+     */
+    private Node tail;
+    /**
+     * Number of entries in the level.
+     */
+    private int size;
+    /**
+     * Sum of the remaining volume of all entries.
+     */
+    private int volume;
+
+    /**
+     * Package-visible construction method to create an empty level.
+     *
+     * @param price of level
+     */
+    PriceLevel(Price price) {
+        this.price = price;
+    }
+
+    /**
+     * Returns the price of this level.
+     *
+     * @return price of level
+     */
+    Price getPrice() {
+        return price;
+    }
+
+    /**
+     * Returns true if no entries are left in the level.
+     *
+     * @return true if empty
+     */
+    boolean isEmpty() {
+        return head == null;
+    }
+
+    /**
+     * Returns the number of entries in the level.
+     *
+     * @return number of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Returns the total remaining volume of all entries in the level.
+     *
+     * @return total remaining volume
+     */
+    int getVolume() {
+        return volume;
+    }
+
+    /**
+     * Returns the oldest entry in the level, or null if empty.
+     *
+     * @return first node
+     */
+    Node getFirst() {
+        return head;
+    }
+
+    /**
+     * Appends a tradable to the back of the queue.
+     *
+     * @param t tradable
+     * @return node holding the tradable
+     */
+    Node add(Tradable t) {
+        Node n = new Node(t, this);
+        if (tail == null) {
+            head = n;
+        } else {
+            tail.next = n;
+            n.prev = tail;
+        }
+        tail = n;
+        size++;
+        volume += t.getRemainingVolume();
+        return n;
+    }
+
+    /**
+     * Removes and returns the tradable at the front of the queue.
+     *
+     * @return first tradable, or null if empty
+     */
+    Tradable pop() {
+        Node n = head;
+        if (n == null) {
+            return null;
+        }
+        remove(n);
+        return n.tradable;
+    }
+
+    /**
+     * Unlinks a node from the queue.
+     *
+     * @param n node to remove
+     */
+    void remove(Node n) {
+        if (n.level != this) {
+            return;
+        }
+        if (n.prev == null) {
+            head = n.next;
+        } else {
+            n.prev.next = n.next;
+        }
+        if (n.next == null) {
+            tail = n.prev;
+        } else {
+            n.next.prev = n.prev;
+        }
+        n.prev = null;
+        n.next = null;
+        n.level = null;
+        size--;
+        volume -= n.tradable.getRemainingVolume();
+    }
+
+    /**
+     * Drops every entry from the level at once.
+     */
+    void clear() {
+        for (Node n = head; n != null; n = n.next) {
+            n.level = null;
+        }
+        head = null;
+        tail = null;
+        size = 0;
+        volume = 0;
+    }
+
+    /**
+     * Takes volume off the tradable held by a node and off the level total.
+     *
+     * @param n node that traded
+     * @param tradedVolume volume to take off
+     * @throws Exception
+     */
+    void reduce(Node n, int tradedVolume) throws Exception {
+        n.tradable.setRemainingVolume(n.tradable.getRemainingVolume() - tradedVolume);
+        volume -= tradedVolume;
+    }
+
+    /**
+     * Takes volume off the level total for a tradable in this level whose
+     * remaining volume has already been reduced, by trading somewhere other
+     * than through this level or by an amend.
+     *
+     * @param reducedVolume volume taken off
+     */
+    void reduceVolume(int reducedVolume) {
+        volume -= reducedVolume;
+    }
+
+    /**
+     * Swaps the tradable held by a node for another, keeping its place in the
+     * queue.
+     *
+     * @param n node to update
+     * @param t new tradable
+     */
+    void replace(Node n, Tradable t) {
+        volume += t.getRemainingVolume() - n.tradable.getRemainingVolume();
+        n.tradable = t;
+    }
+
+    /**
+     * This class is one entry of a price level queue.
+     */
+    static final class Node {
+
+        /**
+         * Tradable held by this node.
+         */
+        private Tradable tradable;
+        /**
+         * Level this node is linked into, null once removed.
+         */
+        private PriceLevel level;
+        /**
+         * Previous (older) node.
+         */
+        private Node prev;
+        /**
+         * Next (newer) node.
+         */
+        private Node next;
+
+        /**
+         * Private construction method for a new node.
+         *
+         * @param t tradable
+         * @param level owning level
+         */
+        private Node(Tradable t, PriceLevel level) {
+            this.tradable = t;
+            this.level = level;
+        }
+
+        /**
+         * Returns the tradable held by this node.
+         *
+         * @return tradable
+         */
+        Tradable getTradable() {
+            return tradable;
+        }
+
+        /**
+         * Returns the level this node is linked into, or null if removed.
+         *
+         * @return owning level
+         */
+        PriceLevel getLevel() {
+            return level;
+        }
+
+        /**
+         * Returns the next (newer) node in the level, or null if last.
+         *
+         * @return next node
+         */
+        Node getNext() {
+            return next;
+        }
+    }
+}
+//end of file
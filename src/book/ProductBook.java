@@ -4,24 +4,25 @@
 package book;
 
 import book.utils.DataValidationException;
+import book.utils.InvalidMarketStateException;
 import book.utils.OrderNotFoundException;
 import constants.BookSide;
+import constants.BookType;
 import constants.MarketState;
+import constants.RejectReason;
 import exceptions.ExceptionHandler;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.List;
 import price.Price;
 import price.PriceFactory;
+import publishers.AmendMessage;
 import publishers.CancelMessage;
 import publishers.CurrentMarketPublisher;
-import publishers.FillMessage;
+import publishers.IndicativeOpenPublisher;
 import publishers.LastSalePublisher;
 import publishers.MarketDataDTO;
 import publishers.MessagePublisher;
+import tradable.InstrumentDirectory;
 import tradable.Order;
 import tradable.Quote;
 import tradable.Tradable;
@@ -39,6 +40,16 @@ public class ProductBook {
      * Stock symbol of product.
      */
     private String product;
+    /**
+     * Instrument id of product, or NONE if the product has none.
+     */
+    private int instrumentId;
+    /**
+     * State of market as this book last changed to. It only changes in
+     * preOpenMarket, openMarket and closeMarket, so it moves in step with the
+     * commands run against the book.
+     */
+    private volatile MarketState marketState;
     /**
      * Buy Book side object maintains buy side of this book.
      */
@@ -52,13 +63,44 @@ public class ProductBook {
      */
     private String lastCurrentMarket;
     /**
-     * Set of User Quotes.
+     * Reused to build the current market data values before comparing them to
+     * the latest, so an unchanged market makes no new String.
+     */
+    private final StringBuilder currentMarket = new StringBuilder(48);
+    /**
+     * Default largest number of retired orders each book remembers.
+     */
+    public static final int DEFAULT_RETIRED_ORDERS = 100000;
+    /**
+     * Orders that have left the book, kept to answer late cancels.
+     */
+    private RetiredOrderStore oldEntries = new RetiredOrderStore(DEFAULT_RETIRED_ORDERS, 0);
+    /**
+     * True while a batch of commands is being run, so current market updates
+     * are held back until the batch ends.
+     */
+    private boolean batching;
+    /**
+     * True if the market may have changed during the current batch.
+     */
+    private boolean marketChanged;
+    /**
+     * True if a PREOPEN change may have moved the indicative opening price.
+     */
+    private boolean indicativeChanged;
+    /**
+     * Limit price depth of both sides with cumulative volume, kept up to date
+     * by depthChanged while the book is in PREOPEN and null otherwise.
      */
-    private HashSet<String> userQuotes = new HashSet<>();
+    private AuctionDepth auctionDepth;
     /**
-     * Map of old Entries.
+     * Indicative opening price last published, or null if none.
      */
-    private HashMap<Price, ArrayList<Tradable>> oldEntries = new HashMap<>();
+    private Price indicativePrice;
+    /**
+     * Indicative opening volume last published.
+     */
+    private long indicativeVolume;
 
     /**
      * Public construction method to create a new Product Book for a stock
@@ -68,9 +110,23 @@ public class ProductBook {
      * @throws Exception
      */
     public ProductBook(String productSymbol) throws Exception {
+        this(productSymbol, BookType.SORTED);
+    }
+
+    /**
+     * Public construction method to create a new Product Book for a stock
+     * symbol whose sides keep their price levels the way the book type says.
+     *
+     * @param productSymbol of certain stock
+     * @param type of book
+     * @throws Exception
+     */
+    public ProductBook(String productSymbol, BookType type) throws Exception {
         setProduct(productSymbol);
-        buyBook = new ProductBookSide(this, BookSide.BUY);
-        sellBook = new ProductBookSide(this, BookSide.SELL);
+        instrumentId = InstrumentDirectory.getInstance().getId(productSymbol);
+        marketState = ProductService.getInstance().getMarketState();
+        buyBook = new ProductBookSide(this, BookSide.BUY, type);
+        sellBook = new ProductBookSide(this, BookSide.SELL, type);
         lastCurrentMarket = ("");
     }
 
@@ -95,6 +151,27 @@ public class ProductBook {
         return product;
     }
 
+    /**
+     * Public Get Method which returns the instrument id of the product, or
+     * NONE if the product had none when the book was made.
+     *
+     * @return instrument id
+     */
+    public int getInstrumentId() {
+        return instrumentId;
+    }
+
+    /**
+     * Public Get Method which returns the state of market this book is in.
+     * While the market changes state this can differ from the state of the
+     * ProductService until the book has made the change itself.
+     *
+     * @return market state of book
+     */
+    public MarketState getMarketState() {
+        return marketState;
+    }
+
     /**
      * This method will return an ArrayList containing any orders for the
      * specified user that have remaining quantity.
@@ -124,22 +201,56 @@ public class ProductBook {
      * @throws Exception
      */
     public synchronized void checkTooLateToCancel(String orderId) throws OrderNotFoundException, Exception {
-        Iterator it = oldEntries.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry entryTrade = (Map.Entry) it.next();
-            if (entryTrade.getValue() != null) {
-                ArrayList<Tradable> tradables = (ArrayList<Tradable>) entryTrade.getValue();
-                for (Tradable t : tradables) {
-                    if (t.getId().equals(orderId) && !t.isQuote()) {
-                        String details = ("Too late to Cancel");
-                        CancelMessage cm = new CancelMessage(t.getUser(), t.getProduct(), t.getPrice(), t.getRemainingVolume(), details, t.getSide(), t.getId());
-                        MessagePublisher.getInstance().publishCancel(cm);
-                        return;
-                    }
-                }
-            }
+        Tradable t = findOldEntry(orderId);
+        CancelMessage cm = new CancelMessage(t.getUser(), t.getProduct(), t.getPrice(), t.getRemainingVolume(), "Too late to Cancel", t.getSide(), t.getId());
+        MessagePublisher.getInstance().publishCancel(cm);
+    }
+
+    /**
+     * This method will determine if it is too late to amend an order, telling
+     * the user with an amend message that carries the order as it left the
+     * book.
+     *
+     * @param orderId of order
+     * @throws OrderNotFoundException
+     * @throws Exception
+     */
+    public synchronized void checkTooLateToAmend(String orderId) throws OrderNotFoundException, Exception {
+        Tradable t = findOldEntry(orderId);
+        AmendMessage am = new AmendMessage(t.getUser(), t.getProduct(), t.getPrice(), t.getRemainingVolume(), "Too late to Amend", t.getSide(), t.getId());
+        MessagePublisher.getInstance().publishAmend(am);
+    }
+
+    /**
+     * Private method to return an order that has already left the book, or
+     * throw if it is unknown.
+     *
+     * @param orderId of order
+     * @return order that left the book
+     * @throws OrderNotFoundException
+     */
+    private Tradable findOldEntry(String orderId) throws OrderNotFoundException {
+        Tradable t = oldEntries.get(orderId);
+        if (t == null) {
+            throw new OrderNotFoundException("OrderNotFoundException: Requested order could not be found.");
+        }
+        return t;
+    }
+
+    /**
+     * This method will set how many retired orders, and for how long, the book
+     * remembers in order to answer late cancels. Orders outside the new
+     * retention are dropped straight away.
+     *
+     * @param maxEntries largest number of orders kept, 0 for no limit
+     * @param maxAgeMillis longest time an order is kept, 0 for no limit
+     * @throws Exception
+     */
+    public synchronized void setCancelRetention(int maxEntries, long maxAgeMillis) throws Exception {
+        String thisClass = "book.ProductBook#setCancelRetention.";
+        if (ExceptionHandler.checkIntNegative(maxEntries, thisClass) && ExceptionHandler.checkLongNegative(maxAgeMillis, thisClass)) {
+            oldEntries.setRetention(maxEntries, maxAgeMillis);
         }
-        throw new OrderNotFoundException("OrderNotFoundException: Requested order could not be found.");
     }
 
     /**
@@ -181,55 +292,71 @@ public class ProductBook {
     }
 
     /**
-     * This method will add the tradable passed in to the old Entries hash map.
+     * This method will retire the tradable passed in, moving any remaining
+     * volume to cancelled volume. Orders are remembered in the old entries
+     * store; quote sides are never cancelled by id so they are not kept.
      *
      * @param t tradable to be added to old entries
      * @throws Exception
      */
     public synchronized void addOldEntry(Tradable t) throws Exception {
-        if (oldEntries.get(t.getPrice()) == null) {
-            ArrayList<Tradable> newTrades = new ArrayList<>();
-            oldEntries.put(t.getPrice(), newTrades);
+        t.setCancelledVolume(t.getRemainingVolume());
+        t.setRemainingVolume(0);
+        if (!t.isQuote()) {
+            oldEntries.add(t);
+        }
+    }
+
+    /**
+     * This method will retire a list of orders together, moving any remaining
+     * volume to cancelled volume and remembering them in the old entries
+     * store in one step.
+     *
+     * @param orders to be added to old entries
+     * @throws Exception
+     */
+    synchronized void addOldEntries(List<Tradable> orders) throws Exception {
+        for (Tradable t : orders) {
             t.setCancelledVolume(t.getRemainingVolume());
             t.setRemainingVolume(0);
-        } else {
-            ArrayList<Tradable> tradables = oldEntries.get(t.getPrice());
-            tradables.add(t);
         }
+        oldEntries.addAll(orders);
     }
 
     /**
-     * This method opens the book for trading.
+     * This method puts the book in PREOPEN, where entries rest without
+     * trading until the book is opened.
+     *
+     * @throws Exception
+     */
+    public synchronized void preOpenMarket() throws Exception {
+        marketState = MarketState.PREOPEN;
+    }
+
+    /**
+     * This method opens the book for trading. A book left crossed by PREOPEN
+     * orders is uncrossed in one call auction: every entry that can trade is
+     * filled at a single clearing price, then one current market and one last
+     * sale are published.
      *
      * @throws Exception
      */
     public synchronized void openMarket() throws Exception {
-        Price buyPrice = buyBook.topOfBookPrice();
-        Price sellPrice = sellBook.topOfBookPrice();
-        if (buyPrice != null || sellPrice != null) {
-            while (buyPrice.greaterOrEqual(sellPrice) || buyPrice.isMarket() || sellPrice.isMarket()) {
-                ArrayList<Tradable> topBuy = buyBook.getEntriesAtPrice(buyPrice);
-                HashMap<String, FillMessage> allFills = new HashMap<>();
-                ArrayList<Tradable> toRemove = new ArrayList<>();
-                for (Tradable t : topBuy) {
-                    allFills = sellBook.tryTrade(t);
-                    if (t.getRemainingVolume() == 0) {
-                        toRemove.add(t);
-                    }
-                }
-                for (Tradable t : toRemove) {
-                    buyBook.removeTradable(t);
-                }
-                updateCurrentMarket();
-                Price lastSalePrice = determineLastSalePrice(allFills);
-                int lastSaleVolume = determineLastSaleQuantity(allFills);
-                LastSalePublisher.getInstance().publishLastSale(product, lastSalePrice, lastSaleVolume);
-                buyPrice = buyBook.topOfBookPrice();
-                sellPrice = sellBook.topOfBookPrice();
-                if (buyPrice == null || sellPrice == null) {
-                    break;
-                }
-            }
+        marketState = MarketState.OPEN;
+        auctionDepth = null;
+        indicativeChanged = false;
+        indicativePrice = null;
+        indicativeVolume = 0;
+        IndicativeOpenPublisher.getInstance().discard(product);
+        UncrossingAuction auction = new UncrossingAuction(buyBook, sellBook);
+        long volume = auction.getVolume();
+        if (volume > 0) {
+            Price openPrice = auction.getPrice();
+            PriceFactory.addReferencePrice(openPrice.getValue());
+            buyBook.fillAtPrice(openPrice, volume);
+            sellBook.fillAtPrice(openPrice, volume);
+            updateCurrentMarket();
+            LastSalePublisher.getInstance().publishLastSale(product, openPrice, (int) Math.min(volume, Integer.MAX_VALUE));
         }
     }
 
@@ -240,6 +367,8 @@ public class ProductBook {
      */
     @SuppressWarnings("empty-statement")
     public synchronized void closeMarket() throws Exception {
+        marketState = MarketState.CLOSED;
+        auctionDepth = null;
         buyBook.cancelAll();;
         sellBook.cancelAll();
         updateCurrentMarket();
@@ -265,6 +394,97 @@ public class ProductBook {
         }
     }
 
+    /**
+     * This method will cancel every order and quote side of the specified
+     * user on one side of the book, or on both if no side is given, and
+     * publish at most one current market update.
+     *
+     * @param userName of user
+     * @param side of book, or null for both sides
+     * @return number of entries cancelled
+     * @throws Exception
+     */
+    public synchronized int massCancel(String userName, BookSide side) throws Exception {
+        int count = 0;
+        if (side == null || side == BookSide.BUY) {
+            count += buyBook.massCancel(userName);
+        }
+        if (side == null || side == BookSide.SELL) {
+            count += sellBook.massCancel(userName);
+        }
+        if (count > 0) {
+            updateCurrentMarket();
+        }
+        return count;
+    }
+
+    /**
+     * This method will amend the order specified by the provided order ID on
+     * the specified side to the new price and remaining volume, as one step.
+     * A volume decrease at the same price keeps the order's time priority. Any
+     * other change re-enters the order at the new price, where it trades if it
+     * crosses an open market. At most one current market update is published
+     * and none shows the order half amended.
+     *
+     * @param side of book
+     * @param orderId of order
+     * @param newPrice of order
+     * @param newVolume new remaining volume
+     * @throws DataValidationException
+     * @throws Exception
+     */
+    public synchronized void amendOrder(BookSide side, String orderId, Price newPrice, int newVolume) throws DataValidationException, Exception {
+        String thisClass = "book.ProductBook#amendOrder.";
+        if (ExceptionHandler.checkObject(newPrice, thisClass) && ExceptionHandler.checkIntNegative(newVolume, thisClass)
+                && ExceptionHandler.checkIntZero(newVolume, thisClass)) {
+            if (newPrice.isMarket()) {
+                throw new DataValidationException("DataValidationException: An order cannot be amended to a market price.");
+            }
+            ProductBookSide bookSide = (side == BookSide.BUY) ? buyBook : sellBook;
+            beginBatch();
+            try {
+                Tradable t = bookSide.amendOrder(orderId, newPrice, newVolume);
+                if (t != null) {
+                    addToBook(side, t);
+                }
+                updateCurrentMarket();
+            } finally {
+                endBatch();
+            }
+        }
+    }
+
+    /**
+     * This method will cancel every order in the list on the specified side and
+     * publish at most one current market update for the whole batch. Every
+     * cancel is tried even if an earlier one fails, and the first failure is
+     * thrown once the batch is done.
+     *
+     * @param side of book
+     * @param orderIds of orders
+     * @throws Exception
+     */
+    public synchronized void cancelOrders(BookSide side, List<String> orderIds) throws Exception {
+        Exception first = null;
+        beginBatch();
+        try {
+            for (String orderId : orderIds) {
+                try {
+                    cancelOrder(side, orderId);
+                } catch (Exception e) {
+                    if (first == null) {
+                        first = e;
+                    }
+                }
+            }
+        } finally {
+            endBatch();
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
     /**
      * This method will cancel the specified user's quote on both the buy and
      * sell sides.
@@ -287,35 +507,56 @@ public class ProductBook {
      * @throws Exception
      */
     public synchronized void addToBook(Quote q) throws DataValidationException, Exception {
-        Price sellQuote = q.getQuoteSide(BookSide.SELL).getPrice();
-        Price buyQuote = q.getQuoteSide(BookSide.BUY).getPrice();
-        sellQuote = check(sellQuote);
-        buyQuote = check(buyQuote);
-        int sellVolume = q.getQuoteSide(BookSide.SELL).getOriginalVolume();
-        int buyVolume = q.getQuoteSide(BookSide.BUY).getOriginalVolume();
-        if (sellQuote.lessOrEqual(buyQuote)) {
+        checkNotClosed();
+        RejectReason reason = checkQuote(q);
+        if (reason == RejectReason.CROSSED_PRICES) {
             throw new DataValidationException("DataValidationException: Sell price is less than or equal to buy price.");
-        } else if (buyQuote.lessOrEqual(PriceFactory.makeLimitPrice("00")) || sellQuote.lessOrEqual(PriceFactory.makeLimitPrice("00"))) {
+        } else if (reason == RejectReason.INVALID_PRICE) {
             throw new DataValidationException("DataValidationException: Price is less than or equal to zero.");
-        } else if (buyVolume <= 0 || sellVolume <= 0) {
+        } else if (reason == RejectReason.INVALID_VOLUME) {
             throw new DataValidationException("DataValidationException: Volume is less than or equal to zero.");
         } else {
-            String userName = q.getUserName();
-            if (userQuotes.contains(userName)) {
-                buyBook.removeQuote(userName);
-                sellBook.removeQuote(userName);
-            }
             if (ExceptionHandler.checkObject(q, "book.ProductBook#addtoBook.")) {
                 Tradable buyQ = q.getQuoteSide(BookSide.BUY);
                 Tradable sellQ = q.getQuoteSide(BookSide.SELL);
-                addToBook(BookSide.BUY, buyQ);
-                addToBook(BookSide.SELL, sellQ);
-                userQuotes.add(userName);
+                boolean buyReplaced = buyBook.replaceQuote(buyQ);
+                boolean sellReplaced = sellBook.replaceQuote(sellQ);
+                if (!buyReplaced) {
+                    addToBook(BookSide.BUY, buyQ);
+                }
+                if (!sellReplaced) {
+                    addToBook(BookSide.SELL, sellQ);
+                }
                 updateCurrentMarket();
             }
         }
     }
 
+    /**
+     * This method will check the prices and volumes of a quote and return why
+     * it would be rejected, or ACCEPTED if it is valid.
+     *
+     * @param q quote
+     * @return reject reason
+     * @throws Exception
+     */
+    RejectReason checkQuote(Quote q) throws Exception {
+        Price sellQuote = q.getQuoteSide(BookSide.SELL).getPrice();
+        Price buyQuote = q.getQuoteSide(BookSide.BUY).getPrice();
+        sellQuote = check(sellQuote);
+        buyQuote = check(buyQuote);
+        int sellVolume = q.getQuoteSide(BookSide.SELL).getOriginalVolume();
+        int buyVolume = q.getQuoteSide(BookSide.BUY).getOriginalVolume();
+        if (sellQuote.lessOrEqual(buyQuote)) {
+            return RejectReason.CROSSED_PRICES;
+        } else if (buyQuote.lessOrEqual(PriceFactory.makeLimitPrice("00")) || sellQuote.lessOrEqual(PriceFactory.makeLimitPrice("00"))) {
+            return RejectReason.INVALID_PRICE;
+        } else if (buyVolume <= 0 || sellVolume <= 0) {
+            return RejectReason.INVALID_VOLUME;
+        }
+        return RejectReason.ACCEPTED;
+    }
+
     /**
      * This method will add the provided order to the appropriate product book
      * side.
@@ -328,6 +569,36 @@ public class ProductBook {
         updateCurrentMarket();
     }
 
+    /**
+     * This method will add every order in the list to the book in order and
+     * publish at most one current market update for the whole batch. Every
+     * order is tried even if an earlier one fails, and the first failure is
+     * thrown once the batch is done.
+     *
+     * @param orders in arrival order
+     * @throws Exception
+     */
+    public synchronized void addToBook(List<Order> orders) throws Exception {
+        Exception first = null;
+        beginBatch();
+        try {
+            for (Order o : orders) {
+                try {
+                    addToBook(o.getSide(), o);
+                } catch (Exception e) {
+                    if (first == null) {
+                        first = e;
+                    }
+                }
+            }
+        } finally {
+            endBatch();
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
     /**
      * This method is a key part of the trading system and deals with the
      * addition of Tradable objects to the BUY/SELL product book side, handling
@@ -337,14 +608,15 @@ public class ProductBook {
      * @param t tradable
      */
     private synchronized void addToBook(BookSide side, Tradable t) throws Exception {
-        if (ProductService.getInstance().getMarketState() == MarketState.PREOPEN) {
+        checkNotClosed();
+        if (marketState == MarketState.PREOPEN) {
             if (side == BookSide.BUY) {
                 buyBook.addToBook(t);
             } else if (side == BookSide.SELL) {
                 sellBook.addToBook(t);
             }
         } else {
-            HashMap<String, FillMessage> allFills = null;
+            FillBuffer allFills = null;
             if (side == BookSide.SELL) {
                 allFills = buyBook.tryTrade(t);
             } else if (side == BookSide.BUY) {
@@ -355,6 +627,7 @@ public class ProductBook {
                 int diff = (t.getOriginalVolume() - t.getRemainingVolume());
                 Price lastSalePrice = determineLastSalePrice(allFills);
                 lastSalePrice = check(lastSalePrice);
+                PriceFactory.addReferencePrice(lastSalePrice.getValue());
                 LastSalePublisher.getInstance().publishLastSale(product, lastSalePrice, diff);
             }
             if (t.getRemainingVolume() > 0) {
@@ -379,6 +652,10 @@ public class ProductBook {
      * @throws Exception
      */
     public synchronized void updateCurrentMarket() throws Exception {
+        if (batching) {
+            marketChanged = true;
+            return;
+        }
         Price topBuy = buyBook.topOfBookPrice();
         Price topSell = sellBook.topOfBookPrice();
         topBuy = check(topBuy);
@@ -388,56 +665,162 @@ public class ProductBook {
         String thisClass = "book.ProductBook#updateCurrentMarket.";
         if (ExceptionHandler.checkIntNegative(buyTopVolume, thisClass) && ExceptionHandler.checkIntNegative(sellTopVolume, thisClass)
                 && ExceptionHandler.checkObject(topBuy, thisClass) && ExceptionHandler.checkObject(topSell, thisClass)) {
-            String currentMarket = topBuy.toString() + buyTopVolume + topSell.toString() + sellTopVolume;
-            if (!lastCurrentMarket.equals(currentMarket)) {
+            currentMarket.setLength(0);
+            topBuy.appendTo(currentMarket).append(buyTopVolume);
+            topSell.appendTo(currentMarket).append(sellTopVolume);
+            if (!lastCurrentMarket.contentEquals(currentMarket)) {
                 MarketDataDTO marketData = new MarketDataDTO(product, topBuy, buyTopVolume, topSell, sellTopVolume);
                 CurrentMarketPublisher.getInstance().publishCurrentMarket(marketData);
-                lastCurrentMarket = currentMarket;
+                lastCurrentMarket = currentMarket.toString();
             }
         }
+        updateIndicativeOpen();
     }
 
     /**
-     * This method will take a hash amp of fill messages and determine if it
-     * contains what the last sale price is.
+     * Package visible method called by a book side whenever the entries at a
+     * price change. While the market is in PREOPEN, it sets the volume now at
+     * the price in the auction depth, and notes whether the change can move
+     * the indicative opening price, which it can only if the price overlaps
+     * the other side or either side holds market orders.
      *
-     * @param fills messages
-     * @return price of last sale
-     * @throws Exception
+     * @param side of book that changed
+     * @param p price that changed
      */
-    private synchronized Price determineLastSalePrice(HashMap<String, FillMessage> fills) throws Exception {
-        ArrayList<FillMessage> msgs = new ArrayList<>(fills.values());
-        Collections.sort(msgs);
-        if (msgs.get(0).getSide().equals(BookSide.BUY)) {
-            Price p = msgs.get(0).getPrice();
-            return p;
+    synchronized void depthChanged(BookSide side, Price p) {
+        if (marketState != MarketState.PREOPEN) {
+            return;
+        }
+        ProductBookSide sideBook = (side == BookSide.BUY) ? buyBook : sellBook;
+        if (!p.isMarket()) {
+            if (auctionDepth == null) {
+                auctionDepth = buildAuctionDepth();
+            } else {
+                PriceLevel level = sideBook.getEntriesAtPrice(p);
+                auctionDepth.set(side, p.getValue(), (level == null) ? 0 : level.getVolume());
+            }
+        }
+        if (indicativeChanged) {
+            return;
+        }
+        ProductBookSide other = (side == BookSide.BUY) ? sellBook : buyBook;
+        if (other.isEmpty()) {
+            return;
+        }
+        if (p.isMarket() || other.hasMarketPrice()) {
+            indicativeChanged = true;
+        } else if (side == BookSide.BUY) {
+            indicativeChanged = p.getValue() >= other.bestLimitPrice().getValue();
         } else {
-            Collections.reverse(msgs);
-            Price p = msgs.get(0).getPrice();
-            return p;
+            indicativeChanged = p.getValue() <= other.bestLimitPrice().getValue();
         }
     }
 
     /**
-     * This method will take a hash map of fill messages and determine if it
-     * contains what the last sale quantity is.
+     * Private method to make the auction depth from every limit price level
+     * now in the book, which is done once when the first change is made in
+     * PREOPEN.
      *
-     * @param fill messages
-     * @return integer of last sale volume
+     * @return auction depth of book
      */
-    private synchronized int determineLastSaleQuantity(HashMap<String, FillMessage> fills) {
-        ArrayList<FillMessage> msgs = new ArrayList<>(fills.values());
-        Collections.sort(msgs);
-        if (msgs.get(0).getSide().equals(BookSide.BUY)) {
-            int volume = msgs.get(0).getVolume();
-            return volume;
+    private AuctionDepth buildAuctionDepth() {
+        AuctionDepth depth = new AuctionDepth();
+        BookSide[] sides = {BookSide.BUY, BookSide.SELL};
+        for (BookSide side : sides) {
+            ProductBookSide sideBook = (side == BookSide.BUY) ? buyBook : sellBook;
+            Price[] prices = new Price[sideBook.getLimitLevelCount(null)];
+            int[] volumes = new int[prices.length];
+            sideBook.getLimitDepth(prices, volumes);
+            for (int i = 0; i < prices.length; i++) {
+                depth.set(side, prices[i].getValue(), volumes[i]);
+            }
+        }
+        return depth;
+    }
+
+    /**
+     * Private method to work out the indicative opening price again if a
+     * change may have moved it, and publish it if it did. Without market
+     * priced entries it is read from the auction depth, otherwise it is
+     * worked out from the whole book.
+     *
+     * @throws Exception
+     */
+    private void updateIndicativeOpen() throws Exception {
+        if (!indicativeChanged) {
+            return;
+        }
+        indicativeChanged = false;
+        Price p;
+        long v;
+        if (auctionDepth != null && buyBook.getMarketVolume() == 0 && sellBook.getMarketVolume() == 0) {
+            auctionDepth.uncross();
+            v = auctionDepth.getVolume();
+            if (v == 0) {
+                p = null;
+            } else if (indicativePrice != null && indicativePrice.getValue() == auctionDepth.getPrice()) {
+                p = indicativePrice;
+            } else {
+                p = PriceFactory.makeLimitPrice(auctionDepth.getPrice());
+            }
         } else {
-            Collections.reverse(msgs);
-            int volume = msgs.get(0).getVolume();
-            return volume;
+            UncrossingAuction auction = new UncrossingAuction(buyBook, sellBook);
+            p = auction.getPrice();
+            v = auction.getVolume();
+        }
+        boolean samePrice = (p == null) ? (indicativePrice == null) : (indicativePrice != null && p.compareTo(indicativePrice) == 0);
+        if (!samePrice || v != indicativeVolume) {
+            indicativePrice = p;
+            indicativeVolume = v;
+            IndicativeOpenPublisher.getInstance().publishIndicativeOpen(product, p, (int) Math.min(v, Integer.MAX_VALUE));
         }
     }
 
+    /**
+     * Private method to refuse new entries once the book has closed.
+     *
+     * @throws InvalidMarketStateException if the book is CLOSED
+     */
+    private void checkNotClosed() throws InvalidMarketStateException {
+        if (marketState == MarketState.CLOSED) {
+            throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
+        }
+    }
+
+    /**
+     * Private method to start holding back current market updates.
+     */
+    private void beginBatch() {
+        batching = true;
+        marketChanged = false;
+    }
+
+    /**
+     * Private method to stop holding back current market updates and publish
+     * one if the market may have changed during the batch.
+     *
+     * @throws Exception
+     */
+    private void endBatch() throws Exception {
+        batching = false;
+        if (marketChanged) {
+            marketChanged = false;
+            updateCurrentMarket();
+        }
+    }
+
+    /**
+     * This method will take a buffer of fills and determine what the last sale
+     * price is, which is the price of the most recent fill.
+     *
+     * @param fills buffer
+     * @return price of last sale
+     * @throws Exception
+     */
+    private synchronized Price determineLastSalePrice(FillBuffer fills) throws Exception {
+        return fills.getLastPrice();
+    }
+
     /**
      * Private method checks the incoming price value and creates a 0 price if
      * null.
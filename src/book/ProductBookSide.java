@@ -4,18 +4,21 @@
 package book;
 
 import constants.BookSide;
+import constants.BookType;
 import exceptions.ExceptionHandler;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.Map;
 import price.Price;
+import price.PriceFactory;
+import publishers.AmendMessage;
 import publishers.CancelMessage;
-import publishers.FillMessage;
 import publishers.MessagePublisher;
 import tradable.Tradable;
 import tradable.TradableDTO;
+import tradable.TradableId;
 
 /**
  * This class maintains one side (BUY/SELL) of a stock (product) book.
@@ -26,9 +29,28 @@ import tradable.TradableDTO;
 public class ProductBookSide {
 
     /**
-     * Map of all bookEntries for this side.
+     * Sorted price levels of all limit priced book entries for this side.
      */
-    private HashMap<Price, ArrayList<Tradable>> bookEntries = new HashMap();
+    private PriceLadder bookEntries;
+    /**
+     * Market priced book entries, in arrival order. They rank ahead of every
+     * limit price level.
+     */
+    private final PriceLevel marketOrders = new PriceLevel(PriceFactory.makeMarketPrice());
+    /**
+     * Index of all resting orders (not quote sides) on this side by numeric
+     * order id.
+     */
+    private LongHashMap<PriceLevel.Node> orderIndex = new LongHashMap<>();
+    /**
+     * Resting orders (not quote sides) on this side by user name, in arrival
+     * order.
+     */
+    private HashMap<String, LinkedHashSet<PriceLevel.Node>> userOrders = new HashMap<>();
+    /**
+     * Index of all resting quote sides on this side by user name.
+     */
+    private HashMap<String, PriceLevel.Node> quoteIndex = new HashMap<>();
     /**
      * Side that this productBookside represents.
      */
@@ -41,6 +63,10 @@ public class ProductBookSide {
      * Reference to the product book.
      */
     private ProductBook theBook;
+    /**
+     * Reusable buffer of fills from the current trade.
+     */
+    private final FillBuffer fills = new FillBuffer();
 
     /**
      * Public construction method to create a new ProductBookSide object.
@@ -50,9 +76,23 @@ public class ProductBookSide {
      * @throws Exception
      */
     public ProductBookSide(ProductBook book, BookSide side) throws Exception {
+        this(book, side, BookType.SORTED);
+    }
+
+    /**
+     * Public construction method to create a new ProductBookSide object that
+     * keeps its price levels the way the book type says.
+     *
+     * @param book
+     * @param side
+     * @param type of book
+     * @throws Exception
+     */
+    public ProductBookSide(ProductBook book, BookSide side, BookType type) throws Exception {
         setTrader();
         setProductBook(book);
         setBookSide(side);
+        bookEntries = PriceLadderFactory.makePriceLadder(side, type);
     }
 
     /**
@@ -127,11 +167,9 @@ public class ProductBookSide {
     public synchronized ArrayList<TradableDTO> getOrdersWithRemainingQty(String userName) throws Exception {
         ArrayList<TradableDTO> usersTradables = new ArrayList<>();
         if (!isEmpty()) {
-            Iterator it = bookEntries.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry entryTrade = (Map.Entry) it.next();
-                ArrayList<Tradable> Tradables = (ArrayList<Tradable>) entryTrade.getValue();
-                for (Tradable t : Tradables) {
+            for (PriceLevel level = firstLevel(); level != null; level = nextLevel(level)) {
+                for (PriceLevel.Node n = level.getFirst(); n != null; n = n.getNext()) {
+                    Tradable t = n.getTradable();
                     if (!t.isQuote()) {
                         if (t.getRemainingVolume() > 0 && t.getUser().equals(userName)) {
                             TradableDTO newTrade = new TradableDTO(t);
@@ -145,22 +183,13 @@ public class ProductBookSide {
     }
 
     /**
-     * This method will return an ArrayList of the tradable objects that are at
-     * the best price in the book entries hash map.
+     * This method will return the price level holding the tradable objects
+     * that are at the best price in the book entries.
      *
-     * @return ArrayList of tradable objects
+     * @return price level of tradable objects
      */
-    synchronized ArrayList<Tradable> getEntriesAtTopOfBook() {
-        if (!isEmpty()) {
-            ArrayList<Price> sorted = new ArrayList(bookEntries.keySet());
-            Collections.sort(sorted);
-            if (getSide() == BookSide.BUY) {
-                Collections.reverse(sorted);
-            }
-            return getEntriesAtPrice(sorted.get(0));
-        } else {
-            return null;
-        }
+    synchronized PriceLevel getEntriesAtTopOfBook() {
+        return firstLevel();
     }
 
     /**
@@ -176,43 +205,32 @@ public class ProductBookSide {
             emptyBooks[0] = "<Empty>";
             return emptyBooks;
         } else {
-            int sizeOfBooks = bookEntries.size();
+            int sizeOfBooks = bookEntries.size() + (marketOrders.isEmpty() ? 0 : 1);
             String[] copyBooks = new String[sizeOfBooks];
-            ArrayList<Price> sorted = new ArrayList<>(bookEntries.keySet());
-            Collections.sort(sorted);
-            if (getSide() == BookSide.BUY) {
-                Collections.reverse(sorted);
-            }
             int counter = 0;
-            for (Price p : sorted) {
-                ArrayList<Tradable> tradables = getEntriesAtPrice(p);
-                int sumVolume = 0;
-                if (tradables != null) {
-                    for (Tradable t : tradables) {
-                        sumVolume = sumVolume + t.getRemainingVolume();
-                    }
-                    String forBooks = (p.toString() + " x " + Integer.toString(sumVolume));
-                    copyBooks[counter] = forBooks;
-                    counter++;
-                }
+            StringBuilder forBooks = new StringBuilder(32);
+            for (PriceLevel level = firstLevel(); level != null; level = nextLevel(level)) {
+                forBooks.setLength(0);
+                level.getPrice().appendTo(forBooks).append(" x ").append(level.getVolume());
+                copyBooks[counter] = forBooks.toString();
+                counter++;
             }
             return copyBooks;
         }
     }
 
     /**
-     * Package Visible Method to return all tradable objects in this book side
-     * at the price.
+     * Package Visible Method to return the price level holding all tradable
+     * objects in this book side at the price.
      *
      * @param price
-     * @return ArrayList of tradable objects
+     * @return price level of tradable objects
      */
-    synchronized ArrayList<Tradable> getEntriesAtPrice(Price price) {
-        if (bookEntries.get(price) == null) {
-            return null;
-        } else {
-            return bookEntries.get(price);
+    synchronized PriceLevel getEntriesAtPrice(Price price) {
+        if (price.isMarket()) {
+            return marketOrders;
         }
+        return bookEntries.get(price);
     }
 
     /**
@@ -221,20 +239,7 @@ public class ProductBookSide {
      * @return true is bookEntries contains a market price object
      */
     public synchronized boolean hasMarketPrice() {
-        if (!isEmpty()) {
-            Iterator it = bookEntries.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry entryPrice = (Map.Entry) it.next();
-                if (entryPrice.getKey() != null) {
-                    Price p = (Price) entryPrice.getKey();
-                    if (p.isMarket()) {
-                        return true;
-                    }
-                }
-            }
-            return false;
-        }
-        return false;
+        return !marketOrders.isEmpty();
     }
 
     /**
@@ -244,20 +249,7 @@ public class ProductBookSide {
      * @return true if ONLY containing a market price
      */
     public synchronized boolean hasOnlyMarketPrice() {
-        if (!isEmpty()) {
-            Iterator it = bookEntries.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry entryPrice = (Map.Entry) it.next();
-                if (entryPrice.getKey() != null) {
-                    Price p = (Price) entryPrice.getKey();
-                    if (p.isMarket() && bookEntries.size() == 1) {
-                        return true;
-                    }
-                }
-            }
-            return false;
-        }
-        return false;
+        return !marketOrders.isEmpty() && bookEntries.isEmpty();
     }
 
     /**
@@ -266,16 +258,11 @@ public class ProductBookSide {
      * @return best price in the book
      */
     public synchronized Price topOfBookPrice() {
-        if (!isEmpty()) {
-            ArrayList<Price> sorted = new ArrayList<>(bookEntries.keySet());
-            Collections.sort(sorted);
-            if (getSide() == BookSide.BUY) {
-                Collections.reverse(sorted);
-            }
-            return sorted.get(0);
-        } else {
+        PriceLevel level = firstLevel();
+        if (level == null) {
             return null;
         }
+        return level.getPrice();
     }
 
     /**
@@ -286,35 +273,88 @@ public class ProductBookSide {
      */
     public synchronized int topOfBookVolume() {
         if (!isEmpty()) {
-            ArrayList<Price> sorted = new ArrayList<>(bookEntries.keySet());
-            Collections.sort(sorted);
-            if (getSide() == BookSide.BUY) {
-                Collections.reverse(sorted);
-            }
-            Price p = sorted.get(0);
-            ArrayList<Tradable> tradables = getEntriesAtPrice(p);
-            int sumVolume = 0;
-            if (tradables != null) {
-                for (Tradable t : tradables) {
-                    if (t != null) {
-                        sumVolume = (t.getRemainingVolume() + sumVolume);
-                    }
-                }
-                return sumVolume;
-            }
-            return 0;
+            return firstLevel().getVolume();
         } else {
             return 0;
         }
     }
 
+    /**
+     * Package visible method to return the total volume of the market priced
+     * entries.
+     *
+     * @return market order volume
+     */
+    synchronized int getMarketVolume() {
+        return marketOrders.getVolume();
+    }
+
+    /**
+     * Package visible method to return the best limit price, ignoring market
+     * priced entries, or null if there is none.
+     *
+     * @return best limit price
+     */
+    synchronized Price bestLimitPrice() {
+        return bookEntries.bestPrice();
+    }
+
+    /**
+     * Package visible method to return the number of limit price levels at
+     * the given price or better.
+     *
+     * @param worst worst price counted, or null to count every level
+     * @return number of levels
+     */
+    synchronized int getLimitLevelCount(Price worst) {
+        if (worst == null) {
+            return bookEntries.size();
+        }
+        int count = 0;
+        for (PriceLevel level = bookEntries.bestLevel(); level != null && atLeastAsGood(level.getPrice(), worst); level = bookEntries.nextLevel(level)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Package visible method to copy the price and volume of limit price
+     * levels, best first, into the arrays passed in until they are full.
+     *
+     * @param prices of levels
+     * @param volumes of levels
+     */
+    synchronized void getLimitDepth(Price[] prices, int[] volumes) {
+        int i = 0;
+        for (PriceLevel level = bookEntries.bestLevel(); level != null && i < prices.length; level = bookEntries.nextLevel(level)) {
+            prices[i] = level.getPrice();
+            volumes[i] = level.getVolume();
+            i++;
+        }
+    }
+
+    /**
+     * Private method to decide if a limit price is at least as good for this
+     * side as another.
+     *
+     * @param p price
+     * @param other price compared with
+     * @return true if p is as good or better
+     */
+    private boolean atLeastAsGood(Price p, Price other) {
+        if (getSide() == BookSide.BUY) {
+            return p.getValue() >= other.getValue();
+        }
+        return p.getValue() <= other.getValue();
+    }
+
     /**
      * Returns true if the product book is empty, false otherwise.
      *
      * @return true if product book is empty
      */
     public synchronized boolean isEmpty() {
-        if (bookEntries.isEmpty()) {
+        if (bookEntries.isEmpty() && marketOrders.isEmpty()) {
             return true;
         } else {
             return false;
@@ -323,37 +363,47 @@ public class ProductBookSide {
 
     /**
      * This method will cancel every order or quote side at every price in the
-     * book.
+     * book in one pass, best price first. The side is emptied at once, the
+     * orders are retired together, and the cancel messages are sent as one
+     * batch per user.
      *
      * @throws Exception
      */
     public synchronized void cancelAll() throws Exception {
-        while (!isEmpty()) {
-            ArrayList<Price> sorted = new ArrayList<>(bookEntries.keySet());
-            Collections.sort(sorted);
-            if (getSide() == BookSide.BUY) {
-                Collections.reverse(sorted);
-            }
-            for (int i = 0; i < bookEntries.size(); i++) {
-                Price p = sorted.get(i);
-                ArrayList<Tradable> tradables = getEntriesAtPrice(p);
-                if (tradables != null) {
-                    for (Tradable t : tradables) {
-                        if (t.isQuote()) {
-                            submitQuoteCancel(t.getUser());
-                            if (tradables.isEmpty()) {
-                                break;
-                            }
-                        } else {
-                            submitOrderCancel(t.getId());
-                            if (tradables.isEmpty()) {
-                                break;
-                            }
-                        }
-                    }
+        if (isEmpty()) {
+            return;
+        }
+        LinkedHashMap<String, ArrayList<CancelMessage>> byUser = new LinkedHashMap<>();
+        ArrayList<Tradable> retired = new ArrayList<>(orderIndex.size());
+        String product = null;
+        for (PriceLevel level = firstLevel(); level != null; level = nextLevel(level)) {
+            for (PriceLevel.Node n = level.getFirst(); n != null; n = n.getNext()) {
+                Tradable t = n.getTradable();
+                product = t.getProduct();
+                String details;
+                if (t.isQuote()) {
+                    details = ("Quote " + t.getSide() + "-Side Cancelled");
+                } else {
+                    details = (t.getSide() + " Order Cancelled");
+                    retired.add(t);
+                }
+                ArrayList<CancelMessage> messages = byUser.get(t.getUser());
+                if (messages == null) {
+                    messages = new ArrayList<>();
+                    byUser.put(t.getUser(), messages);
                 }
+                messages.add(new CancelMessage(t.getUser(), t.getProduct(), t.getPrice(), t.getRemainingVolume(), details, t.getSide(), t.getId()));
             }
         }
+        marketOrders.clear();
+        bookEntries.clear();
+        orderIndex.clear();
+        userOrders.clear();
+        quoteIndex.clear();
+        theBook.addOldEntries(retired);
+        for (Map.Entry<String, ArrayList<CancelMessage>> e : byUser.entrySet()) {
+            MessagePublisher.getInstance().publishCancels(e.getKey(), product, e.getValue());
+        }
     }
 
     /**
@@ -365,28 +415,44 @@ public class ProductBookSide {
      * @throws Exception
      */
     public synchronized TradableDTO removeQuote(String user) throws Exception {
-        if (!isEmpty()) {
-            Iterator it = bookEntries.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry entryTrade = (Map.Entry) it.next();
-                if (entryTrade.getValue() != null) {
-                    ArrayList<Tradable> tradables = (ArrayList) entryTrade.getValue();
-                    for (Tradable t : tradables) {
-                        if (t.getUser().equals(user) && t.isQuote()) {
-                            TradableDTO userTradable = new TradableDTO(t);
-                            tradables.remove(t);
-                            if (tradables.isEmpty()) {
-                                it.remove();
-                            }
-                            return userTradable;
-                        }
-                    }
-                }
-            }
+        PriceLevel.Node n = quoteIndex.get(user);
+        if (n != null) {
+            TradableDTO userTradable = new TradableDTO(n.getTradable());
+            unlink(n);
+            return userTradable;
         }
         return null;
     }
 
+    /**
+     * This method will replace the user's resting quote side with the one
+     * passed in. If the price is unchanged and the volume does not grow, the
+     * new quote side takes the old one's place in the queue and true is
+     * returned. Otherwise any old quote side is removed and false is returned,
+     * and the caller must add the new quote side to the book.
+     *
+     * @param qs new quote side
+     * @return true if the quote side was updated in place
+     * @throws Exception
+     */
+    public synchronized boolean replaceQuote(Tradable qs) throws Exception {
+        PriceLevel.Node n = quoteIndex.get(qs.getUser());
+        if (n == null) {
+            return false;
+        }
+        Tradable old = n.getTradable();
+        Price oldPrice = old.getPrice();
+        Price newPrice = qs.getPrice();
+        if (!oldPrice.isMarket() && !newPrice.isMarket() && oldPrice.compareTo(newPrice) == 0
+                && qs.getRemainingVolume() <= old.getRemainingVolume()) {
+            n.getLevel().replace(n, qs);
+            theBook.depthChanged(side, oldPrice);
+            return true;
+        }
+        unlink(n);
+        return false;
+    }
+
     /**
      * This method will cancel the order that has the specified identifier.
      *
@@ -394,29 +460,95 @@ public class ProductBookSide {
      * @throws Exception
      */
     public synchronized void submitOrderCancel(String orderId) throws Exception {
-        Iterator it = bookEntries.entrySet().iterator();
-        while (it.hasNext()) {
-            Map.Entry entryTrade = (Map.Entry) it.next();
-            if (entryTrade.getValue() != null) {
-                ArrayList<Tradable> tradables = (ArrayList<Tradable>) entryTrade.getValue();
-                for (Tradable t : tradables) {
-                    if (t.getId().equals(orderId) && !t.isQuote()) {
-                        tradables.remove(t);
-                        String details = (t.getSide() + " Order Cancelled");
-                        CancelMessage aCancelMessage = new CancelMessage(t.getUser(), t.getProduct(), t.getPrice(), t.getRemainingVolume(), details, t.getSide(), t.getId());
-                        MessagePublisher.getInstance().publishCancel(aCancelMessage);
-                        addOldEntry(t);
-                        if (tradables.isEmpty()) {
-                            it.remove();
-                        }
-                        return;
-                    }
-                }
-            }
+        PriceLevel.Node n = orderIndex.get(TradableId.parse(orderId));
+        if (n != null) {
+            Tradable t = n.getTradable();
+            unlink(n);
+            String details = (t.getSide() + " Order Cancelled");
+            CancelMessage aCancelMessage = new CancelMessage(t.getUser(), t.getProduct(), t.getPrice(), t.getRemainingVolume(), details, t.getSide(), t.getId());
+            MessagePublisher.getInstance().publishCancel(aCancelMessage);
+            addOldEntry(t);
+            return;
         }
         theBook.checkTooLateToCancel(orderId);
     }
 
+    /**
+     * This method will amend the order that has the specified identifier to
+     * the new price and remaining volume and publish one message for it. A
+     * volume decrease at the same price is made in place and keeps the order's
+     * place in the queue. Any other change takes the order out of the book
+     * and returns it, and the caller must enter it again.
+     *
+     * @param orderId
+     * @param newPrice
+     * @param newVolume new remaining volume
+     * @return order to enter again, or null if amended in place or not found
+     * @throws Exception
+     */
+    public synchronized Tradable amendOrder(String orderId, Price newPrice, int newVolume) throws Exception {
+        PriceLevel.Node n = orderIndex.get(TradableId.parse(orderId));
+        if (n == null) {
+            theBook.checkTooLateToAmend(orderId);
+            return null;
+        }
+        Tradable t = n.getTradable();
+        Price oldPrice = t.getPrice();
+        int oldVolume = t.getRemainingVolume();
+        boolean inPlace = !oldPrice.isMarket() && !newPrice.isMarket() && oldPrice.compareTo(newPrice) == 0 && newVolume <= oldVolume;
+        if (inPlace) {
+            t.amend(oldPrice, newVolume);
+            n.getLevel().reduceVolume(oldVolume - newVolume);
+            theBook.depthChanged(side, oldPrice);
+        } else {
+            unlink(n);
+            t.amend(newPrice, newVolume);
+        }
+        String details = (t.getSide() + " Order Amended");
+        AmendMessage anAmendMessage = new AmendMessage(t.getUser(), t.getProduct(), t.getPrice(), t.getRemainingVolume(), details, t.getSide(), t.getId());
+        MessagePublisher.getInstance().publishAmend(anAmendMessage);
+        return inPlace ? null : t;
+    }
+
+    /**
+     * This method will cancel every order and the quote side of the specified
+     * user on this side. It works from the user's own entries, so it takes
+     * time in proportion to them rather than to the size of the book. The
+     * orders are retired together and the cancel messages are sent as one
+     * batch.
+     *
+     * @param userName of user
+     * @return number of entries cancelled
+     * @throws Exception
+     */
+    public synchronized int massCancel(String userName) throws Exception {
+        ArrayList<CancelMessage> messages = new ArrayList<>();
+        ArrayList<Tradable> retired = new ArrayList<>();
+        LinkedHashSet<PriceLevel.Node> orders = userOrders.get(userName);
+        if (orders != null) {
+            for (PriceLevel.Node n : new ArrayList<>(orders)) {
+                Tradable t = n.getTradable();
+                String details = (t.getSide() + " Order Cancelled");
+                messages.add(new CancelMessage(t.getUser(), t.getProduct(), t.getPrice(), t.getRemainingVolume(), details, t.getSide(), t.getId()));
+                unlink(n);
+                retired.add(t);
+            }
+        }
+        PriceLevel.Node q = quoteIndex.get(userName);
+        if (q != null) {
+            Tradable t = q.getTradable();
+            String details = ("Quote " + t.getSide() + "-Side Cancelled");
+            messages.add(new CancelMessage(t.getUser(), t.getProduct(), t.getPrice(), t.getRemainingVolume(), details, t.getSide(), t.getId()));
+            unlink(q);
+        }
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        theBook.addOldEntries(retired);
+        MessagePublisher.getInstance().publishCancels(userName, messages.get(0).getProduct(), messages);
+        return messages.size();
+    }
+
     /**
      * This method will cancel the quote side with the specified userName.
      *
@@ -450,38 +582,145 @@ public class ProductBookSide {
      * @throws Exception
      */
     public synchronized void addToBook(Tradable t) throws Exception {
-        if (getEntriesAtPrice(t.getPrice()) == null) {
-            ArrayList<Tradable> newTradables = new ArrayList<>();
-            newTradables.add(t);
-            bookEntries.put(t.getPrice(), newTradables);
+        PriceLevel level;
+        if (t.getPrice().isMarket()) {
+            level = marketOrders;
+        } else {
+            level = bookEntries.getOrCreate(t.getPrice());
+        }
+        PriceLevel.Node n = level.add(t);
+        if (t.isQuote()) {
+            quoteIndex.put(t.getUser(), n);
+        } else {
+            orderIndex.put(t.getNumericId(), n);
+            LinkedHashSet<PriceLevel.Node> orders = userOrders.get(t.getUser());
+            if (orders == null) {
+                orders = new LinkedHashSet<>();
+                userOrders.put(t.getUser(), orders);
+            }
+            orders.add(n);
+        }
+        theBook.depthChanged(side, level.getPrice());
+    }
+
+    /**
+     * Package visible method to drop a tradable that has traded out of the
+     * book from the order or quote index.
+     *
+     * @param t tradable
+     */
+    synchronized void removeFromIndex(Tradable t) {
+        if (t.isQuote()) {
+            PriceLevel.Node n = quoteIndex.get(t.getUser());
+            if (n != null && n.getTradable() == t) {
+                quoteIndex.remove(t.getUser());
+            }
         } else {
-            ArrayList<Tradable> tradables = getEntriesAtPrice(t.getPrice());
-            tradables.add(t);
+            PriceLevel.Node n = orderIndex.remove(t.getNumericId());
+            LinkedHashSet<PriceLevel.Node> orders = (n == null) ? null : userOrders.get(t.getUser());
+            if (orders != null) {
+                orders.remove(n);
+                if (orders.isEmpty()) {
+                    userOrders.remove(t.getUser());
+                }
+            }
         }
     }
 
+    /**
+     * Package visible method to account for volume that a tradable resting
+     * in this book side traded against the other side of the book.
+     *
+     * @param t tradable
+     * @param tradedVolume volume traded
+     */
+    synchronized void tradedVolume(Tradable t, int tradedVolume) {
+        PriceLevel.Node n = findNode(t);
+        if (n != null) {
+            n.getLevel().reduceVolume(tradedVolume);
+        }
+    }
+
+    /**
+     * Private method to find the node holding a resting tradable.
+     *
+     * @param t tradable
+     * @return node holding the tradable or null if not resting in this side
+     */
+    private PriceLevel.Node findNode(Tradable t) {
+        PriceLevel.Node n;
+        if (t.isQuote()) {
+            n = quoteIndex.get(t.getUser());
+        } else {
+            n = orderIndex.get(t.getNumericId());
+        }
+        if (n != null && n.getTradable() == t) {
+            return n;
+        }
+        return null;
+    }
+
+    /**
+     * Private method to return the best level, the market order queue if it
+     * holds anything, or null if the side is empty.
+     *
+     * @return best level
+     */
+    private PriceLevel firstLevel() {
+        if (!marketOrders.isEmpty()) {
+            return marketOrders;
+        }
+        return bookEntries.bestLevel();
+    }
+
+    /**
+     * Private method to return the next level after the given one, going from
+     * best to worst, or null if it is the worst.
+     *
+     * @param level current level
+     * @return next worse level
+     */
+    private PriceLevel nextLevel(PriceLevel level) {
+        if (level == marketOrders) {
+            return bookEntries.bestLevel();
+        }
+        return bookEntries.nextLevel(level);
+    }
+
+    /**
+     * Private method to unlink a node from its level, drop it from the index
+     * and remove the level if it is left empty.
+     *
+     * @param n node to unlink
+     */
+    private void unlink(PriceLevel.Node n) {
+        PriceLevel level = n.getLevel();
+        level.remove(n);
+        removeFromIndex(n.getTradable());
+        if (level.isEmpty() && level != marketOrders) {
+            bookEntries.remove(level.getPrice());
+        }
+        theBook.depthChanged(side, level.getPrice());
+    }
+
     /**
      * This method will attempt a trade of the provided tradable against entries
-     * in this ProductBookSide.
+     * in this ProductBookSide and publish the resulting fills.<br> The buffer
+     * returned is reused by the next trade on this side.
      *
      * @param t tradable to trade
-     * @return HashMap of fill messages
+     * @return buffer of fills
      * @throws Exception
      */
-    public HashMap<String, FillMessage> tryTrade(Tradable t) throws Exception {
-        HashMap<String, FillMessage> fillMsgs = new HashMap<>();
+    public synchronized FillBuffer tryTrade(Tradable t) throws Exception {
+        fills.clear();
         if (getSide() == BookSide.BUY) {
-            fillMsgs = trySellAgainstBuySideTrade(t);
+            trySellAgainstBuySideTrade(t);
         } else if (getSide() == BookSide.SELL) {
-            fillMsgs = tryBuyAgainstSellSideTrade(t);
+            tryBuyAgainstSellSideTrade(t);
         }
-        Iterator itFill = fillMsgs.entrySet().iterator();
-        while (itFill.hasNext()) {
-            Map.Entry nextEntry = (Map.Entry) itFill.next();
-            FillMessage fm = (FillMessage) nextEntry.getValue();
-            MessagePublisher.getInstance().publishFill(fm);
-        }
-        return fillMsgs;
+        fills.publish();
+        return fills;
     }
 
     /**
@@ -489,81 +728,98 @@ public class ProductBookSide {
      * content of the book.
      *
      * @param t tradable
-     * @return HashMap of fill messages
      * @throws Exception
      */
-    public synchronized HashMap<String, FillMessage> trySellAgainstBuySideTrade(Tradable t) throws Exception {
-        HashMap<String, FillMessage> allFills = new HashMap<>();
-        HashMap<String, FillMessage> fillMsgs = new HashMap<>();
-        while (t.getRemainingVolume() > 0 && !isEmpty() && (t.getPrice().lessOrEqual(topOfBookPrice()) || t.getPrice().isMarket())) {
-            HashMap<String, FillMessage> someMsgs = trader.doTrade(t);
-            fillMsgs = mergeFills(fillMsgs, someMsgs);
+    private void trySellAgainstBuySideTrade(Tradable t) throws Exception {
+        while (t.getRemainingVolume() > 0 && canTrade(t)) {
+            trader.doTrade(t, fills);
+        }
+    }
+
+    /**
+     * This method will fill the BUY side tradable passed in against the content
+     * of the book.
+     *
+     * @param t tradable
+     * @throws Exception
+     */
+    private void tryBuyAgainstSellSideTrade(Tradable t) throws Exception {
+        while (t.getRemainingVolume() > 0 && canTrade(t)) {
+            trader.doTrade(t, fills);
         }
-        allFills.putAll(fillMsgs);
-        return allFills;
     }
 
     /**
-     * This method will merge multiple fill messages together into one
-     * consistent list.
+     * Private method to decide if the tradable passed in can trade against the
+     * top of this side. A market price on either side always can.
      *
-     * @param existing fill messages
-     * @param newOnes fill messages
-     * @return a complete Hash map of fill messages
+     * @param t tradable
+     * @return true if it can trade
      * @throws Exception
      */
-    private HashMap<String, FillMessage> mergeFills(HashMap<String, FillMessage> existing, HashMap<String, FillMessage> newOnes) throws Exception {
-        if (existing.isEmpty()) {
-            return new HashMap<>(newOnes);
+    private boolean canTrade(Tradable t) throws Exception {
+        if (isEmpty()) {
+            return false;
+        } else if (t.getPrice().isMarket() || !marketOrders.isEmpty()) {
+            return true;
+        } else if (getSide() == BookSide.BUY) {
+            return t.getPrice().lessOrEqual(bookEntries.bestPrice());
         } else {
-            HashMap<String, FillMessage> results = new HashMap<>(existing);
-            for (String key : newOnes.keySet()) {
-                if (existing.get(key) == null) {
-                    results.put(key, newOnes.get(key));
-                } else {
-                    FillMessage fm = results.get(key);
-                    fm.setVolume(newOnes.get(key).getVolume());
-                    fm.setDetails(newOnes.get(key).getDetails());
-                }
-            }
-            return results;
+            return t.getPrice().greaterOrEqual(bookEntries.bestPrice());
         }
     }
 
     /**
-     * This method will fill the BUY side tradable passed in against the content
-     * of the book.
+     * Package visible method to fill the given volume from this side at one
+     * price, in price-time priority, and publish the fills. Entries that are
+     * filled leave the book. Used to uncross the book when the market opens,
+     * so the side must hold at least that volume at prices that can trade at
+     * the price given.
      *
-     * @param t tradable
-     * @return hash map of fill messages
+     * @param p fill price
+     * @param volume to fill
      * @throws Exception
      */
-    public synchronized HashMap<String, FillMessage> tryBuyAgainstSellSideTrade(Tradable t) throws Exception {
-        HashMap<String, FillMessage> allFills = new HashMap<>();
-        HashMap<String, FillMessage> fillMsgs = new HashMap<>();
-        while (t.getRemainingVolume() > 0 && !isEmpty() && (t.getPrice().greaterOrEqual(topOfBookPrice()) || t.getPrice().isMarket())) {
-            HashMap<String, FillMessage> someMsgs = trader.doTrade(t);
-            fillMsgs = mergeFills(fillMsgs, someMsgs);
+    synchronized void fillAtPrice(Price p, long volume) throws Exception {
+        fills.clear();
+        long left = volume;
+        PriceLevel level = firstLevel();
+        while (left > 0 && level != null) {
+            PriceLevel next = nextLevel(level);
+            PriceLevel.Node n = level.getFirst();
+            while (left > 0 && n != null) {
+                Tradable t = n.getTradable();
+                PriceLevel.Node nextNode = n.getNext();
+                int traded = (int) Math.min(left, t.getRemainingVolume());
+                level.reduce(n, traded);
+                left -= traded;
+                fills.addFill(t, p, traded, t.getRemainingVolume());
+                if (t.getRemainingVolume() == 0) {
+                    level.pop();
+                    removeFromIndex(t);
+                    addOldEntry(t);
+                }
+                n = nextNode;
+            }
+            if (level.isEmpty() && level != marketOrders) {
+                bookEntries.remove(level.getPrice());
+            }
+            level = next;
         }
-        allFills.putAll(fillMsgs);
-        return allFills;
+        fills.publish();
     }
 
     /**
-     * This method will remove a key/value pair from the book entries if the
-     * ArrayList associated with the price passed in is empty.
+     * This method will remove a price level from the book entries if the level
+     * at the price passed in is empty.
      *
      * @param p price
      * @throws Exception
      */
     public synchronized void clearIfEmpty(Price p) throws Exception {
-        if (bookEntries.get(p) != null) {
-            ArrayList<Tradable> tradables = getEntriesAtPrice(p);
-            if (tradables != null) {
-                if (tradables.isEmpty()) {
-                    bookEntries.remove(p);
-                }
-            }
+        PriceLevel level = getEntriesAtPrice(p);
+        if (level != null && level.isEmpty() && level != marketOrders) {
+            bookEntries.remove(p);
         }
     }
 
@@ -574,16 +830,9 @@ public class ProductBookSide {
      * @throws Exception
      */
     public synchronized void removeTradable(Tradable t) throws Exception {
-        if (bookEntries.get(t.getPrice()) != null) {
-            ArrayList<Tradable> tradables = getEntriesAtPrice(t.getPrice());
-            if (tradables != null && !tradables.isEmpty()) {
-                boolean success = tradables.remove(t);
-                if (success) {
-                    if (tradables.isEmpty()) {
-                        clearIfEmpty(t.getPrice());
-                    }
-                }
-            }
+        PriceLevel.Node n = findNode(t);
+        if (n != null) {
+            unlink(n);
         }
     }
 }
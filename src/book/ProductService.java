@@ -9,23 +9,40 @@ import book.utils.NoSuchProductException;
 import book.utils.OrderNotFoundException;
 import book.utils.ProductAlreadyExistsException;
 import constants.BookSide;
+import constants.BookType;
 import constants.MarketState;
+import constants.RejectReason;
 import exceptions.ExceptionHandler;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import publishers.MarketDataDTO;
 import publishers.MarketMessage;
 import publishers.MessagePublisher;
 import tradable.Order;
+import price.Price;
+import tradable.InstrumentDirectory;
+import tradable.MassQuoteResultDTO;
 import tradable.Quote;
 import tradable.TradableDTO;
 
 /**
  * This class implements the Facade design pattern to other entities that make
  * up the products and the product books.<br> This will also be implemented as a
- * thread-safe singleton.
+ * thread-safe singleton. By default every command runs under the service lock;
+ * in sharded mode each product book is pinned to one of a set of worker
+ * threads and commands are routed to it by instrument id, so different
+ * products are matched in parallel.
  *
  * @author Kevin Patrick Westropp
  * @version StockExVirtuoso.Version.1.0
@@ -35,11 +52,50 @@ public class ProductService {
     /**
      * Map of all books.
      */
-    private static HashMap<String, ProductBook> allBooks = new HashMap<>();
+    private static ConcurrentHashMap<String, ProductBook> allBooks = new ConcurrentHashMap<>();
+    /**
+     * Every book indexed by the instrument id of its product, or null. Replaced
+     * with a larger copy when a new book does not fit.
+     */
+    private static volatile ProductBook[] booksById = new ProductBook[16];
     /**
      * State of market OPEN, CLOSED or PREOPEN.
      */
-    private static MarketState state = MarketState.CLOSED;
+    private static volatile MarketState state = MarketState.CLOSED;
+    /**
+     * Largest number of retired orders each book remembers, 0 for no limit.
+     */
+    private static int retiredOrders = ProductBook.DEFAULT_RETIRED_ORDERS;
+    /**
+     * Longest time in milliseconds each book remembers a retired order, 0
+     * for no limit.
+     */
+    private static long retiredOrderMillis = 0;
+    /**
+     * Workers that own the product books in sharded mode, null otherwise.
+     */
+    private volatile BookExecutor executor;
+    /**
+     * Lock held for reading by each command from the moment it finds the
+     * executor until the command has run on it, and for writing while an
+     * executor is taken away, so an executor is only stopped once no command
+     * is using it.
+     */
+    private final ReentrantReadWriteLock executorLock = new ReentrantReadWriteLock();
+    /**
+     * Lock guarding changingState.
+     */
+    private final Object marketStateLock = new Object();
+    /**
+     * True while a change of market state is being made, so changes are made
+     * one at a time.
+     */
+    private boolean changingState;
+    /**
+     * Time in nanoseconds each product book took at the last change of market
+     * state.
+     */
+    private final ConcurrentHashMap<String, Long> marketStateNanos = new ConcurrentHashMap<>();
     /**
      * Single instance of the Product Service.
      */
@@ -74,14 +130,19 @@ public class ProductService {
      * @throws Exception
      * @throws OrderNotFoundException
      */
-    public synchronized ArrayList<TradableDTO> getOrdersWithRemainingQty(String userName, String product) throws OrderNotFoundException, Exception {
-        if (!allBooks.isEmpty()) {
-            ProductBook theBook = allBooks.get(product);
-            ArrayList<TradableDTO> tradables = theBook.getOrdersWithRemainingQty(userName);
-            return tradables;
-        } else {
-            throw new OrderNotFoundException("OrderNotFoundException: The books are currently empty.");
-        }
+    public ArrayList<TradableDTO> getOrdersWithRemainingQty(final String userName, final String product) throws OrderNotFoundException, Exception {
+        final ProductBook theBook = findBook(product);
+        return execute(theBook, new Callable<ArrayList<TradableDTO>>() {
+            @Override
+            public ArrayList<TradableDTO> call() throws Exception {
+                if (!allBooks.isEmpty()) {
+                    ArrayList<TradableDTO> tradables = theBook.getOrdersWithRemainingQty(userName);
+                    return tradables;
+                } else {
+                    throw new OrderNotFoundException("OrderNotFoundException: The books are currently empty.");
+                }
+            }
+        });
     }
 
     /**
@@ -93,22 +154,29 @@ public class ProductService {
      * @throws OrderNotFoundException
      * @throws Exception
      */
-    public synchronized MarketDataDTO getMarketData(String product) throws OrderNotFoundException, Exception {
-        if (!allBooks.isEmpty()) {
-            ProductBook theBook = allBooks.get(product);
-            MarketDataDTO marketData = theBook.getMarketData();
-            return marketData;
-        } else {
-            throw new OrderNotFoundException("OrderNotFoundException: The books are currently empty.");
-        }
+    public MarketDataDTO getMarketData(final String product) throws OrderNotFoundException, Exception {
+        final ProductBook theBook = findBook(product);
+        return execute(theBook, new Callable<MarketDataDTO>() {
+            @Override
+            public MarketDataDTO call() throws Exception {
+                if (!allBooks.isEmpty()) {
+                    MarketDataDTO marketData = theBook.getMarketData();
+                    return marketData;
+                } else {
+                    throw new OrderNotFoundException("OrderNotFoundException: The books are currently empty.");
+                }
+            }
+        });
     }
 
     /**
-     * Returns the market state.
+     * Returns the market state. This does not take the service lock. While the
+     * state changes, each product book keeps its own state until it has made
+     * the change itself.
      *
      * @return market state
      */
-    public synchronized MarketState getMarketState() {
+    public MarketState getMarketState() {
         return state;
     }
 
@@ -121,14 +189,19 @@ public class ProductService {
      * @throws NoSuchProductException
      * @throws Exception
      */
-    public synchronized String[][] getBookDepth(String product) throws NoSuchProductException, Exception {
-        if (allBooks.get(product) == null) {
-            throw new NoSuchProductException("NoSuchProductException: No product currently on the books.");
-        } else {
-            ProductBook theBook = allBooks.get(product);
-            String[][] bookDepth = theBook.getBookDepth();
-            return bookDepth;
-        }
+    public String[][] getBookDepth(final String product) throws NoSuchProductException, Exception {
+        final ProductBook theBook = findBook(product);
+        return execute(theBook, new Callable<String[][]>() {
+            @Override
+            public String[][] call() throws Exception {
+                if (theBook == null) {
+                    throw new NoSuchProductException("NoSuchProductException: No product currently on the books.");
+                } else {
+                    String[][] bookDepth = theBook.getBookDepth();
+                    return bookDepth;
+                }
+            }
+        });
     }
 
     /**
@@ -142,37 +215,103 @@ public class ProductService {
     }
 
     /**
-     * This method will update the market data to the new state.
+     * This method will update the market data to the new state. Every product
+     * book makes the change itself, in parallel, and this returns once all of
+     * them have. The service lock is not held while the books change, so they
+     * may call back into the ProductService.
      *
      * @param ms new market state
      * @throws Exception
      */
-    public synchronized void setMarketState(MarketState ms) throws Exception {
-        check(ms);
-        state = ms;
-        MarketMessage mm = new MarketMessage(ms);
-        MessagePublisher.getInstance().publishMarketMessage(mm);
-        if (ms == MarketState.OPEN) {
-            Iterator it = allBooks.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry entryBook = (Map.Entry) it.next();
-                if (entryBook.getValue() != null) {
-                    ProductBook theBook = (ProductBook) entryBook.getValue();
-                    theBook.openMarket();
-                }
+    public void setMarketState(MarketState ms) throws Exception {
+        synchronized (marketStateLock) {
+            while (changingState) {
+                marketStateLock.wait();
             }
-        } else if (ms == MarketState.CLOSED) {
-            Iterator it = allBooks.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry entryBook = (Map.Entry) it.next();
-                if (entryBook.getValue() != null) {
-                    ProductBook theBook = (ProductBook) entryBook.getValue();
-                    theBook.closeMarket();
+            check(ms);
+            changingState = true;
+        }
+        try {
+            MarketMessage mm = new MarketMessage(ms);
+            MessagePublisher.getInstance().publishMarketMessage(mm);
+            changeAllBooks(ms);
+        } finally {
+            synchronized (marketStateLock) {
+                changingState = false;
+                marketStateLock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * This method will return how long each product book took, in
+     * nanoseconds, to make the last change of market state.
+     *
+     * @return time per product symbol
+     */
+    public HashMap<String, Long> getMarketStateTimings() {
+        return new HashMap<>(marketStateNanos);
+    }
+
+    /**
+     * This method will switch to sharded execution, pinning every product
+     * book to one of the given number of worker threads. Commands already
+     * running, under the service lock or on earlier workers, finish before the
+     * switch.
+     *
+     * @param workers number of worker threads
+     * @throws Exception
+     */
+    public void startShardedExecution(int workers) throws Exception {
+        ExceptionHandler.checkIntNegative(workers, "book.ProductService#startShardedExecution.");
+        ExceptionHandler.checkIntZero(workers, "book.ProductService#startShardedExecution.");
+        executorLock.writeLock().lock();
+        try {
+            stopShardedExecution();
+            synchronized (this) {
+                BookExecutor newExecutor = new BookExecutor(workers);
+                for (ProductBook theBook : allBooks.values()) {
+                    newExecutor.pin(theBook.getInstrumentId());
                 }
+                executor = newExecutor;
             }
+        } finally {
+            executorLock.writeLock().unlock();
         }
     }
 
+    /**
+     * This method will switch back to running every command under the service
+     * lock. It waits for every command that found the workers to finish, and
+     * for the commands queued on the workers to run, before stopping them.
+     *
+     * @throws Exception
+     */
+    public void stopShardedExecution() throws Exception {
+        executorLock.writeLock().lock();
+        try {
+            BookExecutor oldExecutor;
+            synchronized (this) {
+                oldExecutor = executor;
+                executor = null;
+            }
+            if (oldExecutor != null) {
+                oldExecutor.shutdown();
+            }
+        } finally {
+            executorLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns true if product books are running on their own worker threads.
+     *
+     * @return true if sharded
+     */
+    public boolean isShardedExecution() {
+        return executor != null;
+    }
+
     /**
      * This method will create a new stock product that can be used for trading.
      *
@@ -181,14 +320,66 @@ public class ProductService {
      * @throws Exception
      */
     public synchronized void createProduct(String product) throws ProductAlreadyExistsException, Exception {
-        if (allBooks.get(product) != null) {
+        createProduct(product, BookType.SORTED);
+    }
+
+    /**
+     * This method will create a new stock product that can be used for
+     * trading, with a book of the given type. A TICK_ARRAY book suits products
+     * that trade within a few hundred cents of their last sale.
+     *
+     * @param product of new stock
+     * @param type of book
+     * @throws ProductAlreadyExistsException
+     * @throws Exception
+     */
+    public synchronized void createProduct(String product, BookType type) throws ProductAlreadyExistsException, Exception {
+        if (findBook(product) != null) {
             throw new ProductAlreadyExistsException("ProductAlreadyExistsException: Product is already on the books.");
-        } else if (ExceptionHandler.checkString(product, "book.ProductService#createProduct.")) {
-            ProductBook newBook = new ProductBook(product);
+        } else if (ExceptionHandler.checkString(product, "book.ProductService#createProduct.")
+                && ExceptionHandler.checkObject(type, "book.ProductService#createProduct.")) {
+            int id = InstrumentDirectory.getInstance().register(product);
+            ProductBook newBook = new ProductBook(product, type);
+            newBook.setCancelRetention(retiredOrders, retiredOrderMillis);
+            if (executor != null) {
+                executor.pin(id);
+            }
+            ProductBook[] books = booksById;
+            if (id >= books.length) {
+                books = Arrays.copyOf(books, Math.max(id + 1, books.length * 2));
+            }
+            books[id] = newBook;
+            booksById = books;
             allBooks.put(product, newBook);
         }
     }
 
+    /**
+     * This method will set how many retired orders, and for how long, every
+     * product book remembers in order to answer late cancels with "Too late
+     * to Cancel" rather than an unknown order.
+     *
+     * @param maxEntries largest number of orders kept per book, 0 for no limit
+     * @param maxAgeMillis longest time an order is kept, 0 for no limit
+     * @throws Exception
+     */
+    public synchronized void setCancelRetention(final int maxEntries, final long maxAgeMillis) throws Exception {
+        String thisClass = "book.ProductService#setCancelRetention.";
+        if (ExceptionHandler.checkIntNegative(maxEntries, thisClass) && ExceptionHandler.checkLongNegative(maxAgeMillis, thisClass)) {
+            retiredOrders = maxEntries;
+            retiredOrderMillis = maxAgeMillis;
+            for (final ProductBook theBook : allBooks.values()) {
+                execute(theBook, new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        theBook.setCancelRetention(maxEntries, maxAgeMillis);
+                        return null;
+                    }
+                });
+            }
+        }
+    }
+
     /**
      * This method will forward the provided quote to the appropriate product
      * book.
@@ -198,16 +389,22 @@ public class ProductService {
      * @throws NoSuchProductException
      * @throws Exception
      */
-    public synchronized void submitQuote(Quote q) throws InvalidMarketStateException, NoSuchProductException, Exception {
-        String product = q.getProduct();
-        if (state == MarketState.CLOSED) {
-            throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
-        } else if (allBooks.get(product) == null) {
-            throw new NoSuchProductException("NoSuchProductException: No product on the books.");
-        } else {
-            ProductBook theBook = allBooks.get(product);
-            theBook.addToBook(q);
-        }
+    public void submitQuote(final Quote q) throws InvalidMarketStateException, NoSuchProductException, Exception {
+        final String product = q.getProduct();
+        final ProductBook theBook = findBook(product);
+        execute(theBook, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                if (stateOf(theBook) == MarketState.CLOSED) {
+                    throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
+                } else if (theBook == null) {
+                    throw new NoSuchProductException("NoSuchProductException: No product on the books.");
+                } else {
+                    theBook.addToBook(q);
+                }
+                return null;
+            }
+        });
     }
 
     /**
@@ -220,18 +417,282 @@ public class ProductService {
      * @throws NoSuchProductException
      * @throws Exception
      */
-    public synchronized String submitOrder(Order o) throws NoSuchProductException, InvalidMarketStateException, Exception {
-        if (state == MarketState.CLOSED) {
-            throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
-        } else if (state == MarketState.PREOPEN && o.getPrice().isMarket()) {
-            throw new InvalidMarketStateException("InvalidMarketStateException: Market is PREOPEN, cannot submit Market orders during this time.");
-        } else if (allBooks.get(o.getProduct()) == null) {
-            throw new NoSuchProductException("NoSuchProductException: No product on the books.");
-        } else {
-            ProductBook theBook = allBooks.get(o.getProduct());
-            theBook.addToBook(o);
-            return o.getId();
+    public String submitOrder(final Order o) throws NoSuchProductException, InvalidMarketStateException, Exception {
+        final ProductBook theBook = findBook(o.getProduct());
+        return execute(theBook, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+                if (stateOf(theBook) == MarketState.CLOSED) {
+                    throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
+                } else if (stateOf(theBook) == MarketState.PREOPEN && o.getPrice().isMarket()) {
+                    throw new InvalidMarketStateException("InvalidMarketStateException: Market is PREOPEN, cannot submit Market orders during this time.");
+                } else if (theBook == null) {
+                    throw new NoSuchProductException("NoSuchProductException: No product on the books.");
+                } else {
+                    theBook.addToBook(o);
+                    return o.getId();
+                }
+            }
+        });
+    }
+
+    /**
+     * This method will forward a mass quote, one two-sided quote per product,
+     * to the product books and acknowledge it once. Every entry is checked up
+     * front and rejected entries are left out; the accepted entries are then
+     * sent to their books, in parallel in sharded mode or under one lock
+     * acquisition otherwise.
+     *
+     * @param userName of user sending the mass quote
+     * @param quotes one per product
+     * @return outcome of every entry
+     * @throws Exception
+     */
+    public MassQuoteResultDTO submitMassQuote(String userName, List<Quote> quotes) throws Exception {
+        ExceptionHandler.checkString(userName, "book.ProductService#submitMassQuote.");
+        ExceptionHandler.checkObject(quotes, "book.ProductService#submitMassQuote.");
+        final MassQuoteResultDTO result = new MassQuoteResultDTO(userName, quotes.size());
+        MarketState current = state;
+        HashSet<String> quoted = new HashSet<>();
+        ArrayList<Integer> accepted = new ArrayList<>();
+        ProductBook[] books = new ProductBook[quotes.size()];
+        for (int i = 0; i < quotes.size(); i++) {
+            Quote q = quotes.get(i);
+            ExceptionHandler.checkObject(q, "book.ProductService#submitMassQuote.");
+            String product = q.getProduct();
+            result.products[i] = product;
+            ProductBook theBook = findBook(product);
+            books[i] = theBook;
+            if (current == MarketState.CLOSED) {
+                result.rejectReasons[i] = RejectReason.MARKET_CLOSED;
+            } else if (!userName.equals(q.getUserName())) {
+                result.rejectReasons[i] = RejectReason.WRONG_USER;
+            } else if (!quoted.add(product)) {
+                result.rejectReasons[i] = RejectReason.DUPLICATE_PRODUCT;
+            } else if (theBook == null) {
+                result.rejectReasons[i] = RejectReason.NO_SUCH_PRODUCT;
+            } else {
+                result.rejectReasons[i] = theBook.checkQuote(q);
+                if (result.isAccepted(i)) {
+                    accepted.add(i);
+                }
+            }
+        }
+        while (true) {
+            BookExecutor executing = lockExecutor();
+            if (executing != null) {
+                try {
+                    ArrayList<Future<Void>> pending = new ArrayList<>();
+                    for (int i : accepted) {
+                        final ProductBook theBook = books[i];
+                        final Quote q = quotes.get(i);
+                        pending.add(executing.submit(theBook.getInstrumentId(), new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                theBook.addToBook(q);
+                                return null;
+                            }
+                        }));
+                    }
+                    for (int j = 0; j < pending.size(); j++) {
+                        try {
+                            BookExecutor.await(pending.get(j));
+                        } catch (Exception e) {
+                            int i = accepted.get(j);
+                            result.rejectReasons[i] = RejectReason.REJECTED;
+                            result.details[i] = e.getMessage();
+                        }
+                    }
+                } finally {
+                    executorLock.readLock().unlock();
+                }
+                return result;
+            }
+            synchronized (this) {
+                if (executor == null) {
+                    for (int i : accepted) {
+                        try {
+                            books[i].addToBook(quotes.get(i));
+                        } catch (Exception e) {
+                            result.rejectReasons[i] = RejectReason.REJECTED;
+                            result.details[i] = e.getMessage();
+                        }
+                    }
+                    return result;
+                }
+            }
+        }
+    }
+
+    /**
+     * This method will forward a batch of orders to their product books. The
+     * market state and products are checked once for the whole batch, and
+     * nothing is matched if any order is rejected. Each book then runs its
+     * orders in arrival order in one go and publishes at most one current
+     * market update for them.
+     *
+     * @param orders to submit
+     * @return order ids, in the same order as the orders
+     * @throws InvalidMarketStateException
+     * @throws NoSuchProductException
+     * @throws Exception
+     */
+    public ArrayList<String> submitOrders(List<Order> orders) throws NoSuchProductException, InvalidMarketStateException, Exception {
+        ExceptionHandler.checkObject(orders, "book.ProductService#submitOrders.");
+        final LinkedHashMap<String, ArrayList<Order>> byProduct = new LinkedHashMap<>();
+        for (Order o : orders) {
+            ExceptionHandler.checkObject(o, "book.ProductService#submitOrders.");
+            ArrayList<Order> productOrders = byProduct.get(o.getProduct());
+            if (productOrders == null) {
+                productOrders = new ArrayList<>();
+                byProduct.put(o.getProduct(), productOrders);
+            }
+            productOrders.add(o);
         }
+        boolean done = false;
+        while (!done) {
+            BookExecutor current = lockExecutor();
+            if (current != null) {
+                try {
+                    checkOrders(byProduct);
+                    ArrayList<Future<Void>> pending = new ArrayList<>();
+                    for (Map.Entry<String, ArrayList<Order>> entryOrders : byProduct.entrySet()) {
+                        final ProductBook theBook = findBook(entryOrders.getKey());
+                        final ArrayList<Order> productOrders = entryOrders.getValue();
+                        pending.add(current.submit(theBook.getInstrumentId(), new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                theBook.addToBook(productOrders);
+                                return null;
+                            }
+                        }));
+                    }
+                    awaitAll(pending);
+                } finally {
+                    executorLock.readLock().unlock();
+                }
+                done = true;
+            } else {
+                synchronized (this) {
+                    if (executor == null) {
+                        checkOrders(byProduct);
+                        Exception first = null;
+                        for (Map.Entry<String, ArrayList<Order>> entryOrders : byProduct.entrySet()) {
+                            try {
+                                findBook(entryOrders.getKey()).addToBook(entryOrders.getValue());
+                            } catch (Exception e) {
+                                if (first == null) {
+                                    first = e;
+                                }
+                            }
+                        }
+                        if (first != null) {
+                            throw first;
+                        }
+                        done = true;
+                    }
+                }
+            }
+        }
+        ArrayList<String> ids = new ArrayList<>();
+        for (Order o : orders) {
+            ids.add(o.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * This method will cancel every order and quote side a user has resting in
+     * the given products, on the given side, in one command. Each book works
+     * from its index of the user's entries, so the cancel takes time in
+     * proportion to that user's entries and not to the size of the books.
+     *
+     * @param userName of user
+     * @param products symbols to cancel in, or null for every product
+     * @param side of book, or null for both sides
+     * @return number of orders and quote sides cancelled
+     * @throws NoSuchProductException
+     * @throws InvalidMarketStateException
+     * @throws Exception
+     */
+    public int submitMassCancel(final String userName, List<String> products, final BookSide side) throws NoSuchProductException, InvalidMarketStateException, Exception {
+        ExceptionHandler.checkString(userName, "book.ProductService#submitMassCancel.");
+        List<String> targets = (products == null) ? new ArrayList<>(allBooks.keySet()) : products;
+        ArrayList<ProductBook> targetBooks = new ArrayList<>();
+        for (String product : targets) {
+            ProductBook theBook = findBook(product);
+            if (theBook == null) {
+                throw new NoSuchProductException("NoSuchProductException: No product on the books.");
+            }
+            targetBooks.add(theBook);
+        }
+        while (true) {
+            BookExecutor current = lockExecutor();
+            if (current != null) {
+                try {
+                    if (state == MarketState.CLOSED) {
+                        throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
+                    }
+                    final AtomicInteger count = new AtomicInteger();
+                    ArrayList<Future<Void>> pending = new ArrayList<>();
+                    for (final ProductBook theBook : targetBooks) {
+                        pending.add(current.submit(theBook.getInstrumentId(), new Callable<Void>() {
+                            @Override
+                            public Void call() throws Exception {
+                                count.addAndGet(theBook.massCancel(userName, side));
+                                return null;
+                            }
+                        }));
+                    }
+                    awaitAll(pending);
+                    return count.get();
+                } finally {
+                    executorLock.readLock().unlock();
+                }
+            }
+            synchronized (this) {
+                if (executor == null) {
+                    if (state == MarketState.CLOSED) {
+                        throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
+                    }
+                    int count = 0;
+                    for (ProductBook theBook : targetBooks) {
+                        count += theBook.massCancel(userName, side);
+                    }
+                    return count;
+                }
+            }
+        }
+    }
+
+    /**
+     * This method will forward a batch of cancels for one product and side to
+     * the appropriate book. The market state and product are checked once for
+     * the whole batch and at most one current market update is published.
+     *
+     * @param product symbol
+     * @param side of book
+     * @param orderIds system IDs
+     * @throws NoSuchProductException
+     * @throws InvalidMarketStateException
+     * @throws Exception
+     */
+    public void submitOrderCancels(final String product, final BookSide side, final List<String> orderIds) throws NoSuchProductException, InvalidMarketStateException, Exception {
+        ExceptionHandler.checkObject(orderIds, "book.ProductService#submitOrderCancels.");
+        final ProductBook theBook = findBook(product);
+        execute(theBook, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                if (stateOf(theBook) == MarketState.CLOSED) {
+                    throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
+                } else if (theBook == null) {
+                    throw new NoSuchProductException("NoSuchProductException: No product on the books.");
+                } else {
+                    theBook.cancelOrders(side, orderIds);
+                }
+                return null;
+            }
+        });
     }
 
     /**
@@ -245,15 +706,51 @@ public class ProductService {
      * @throws InvalidMarketStateException
      * @throws Exception
      */
-    public synchronized void submitOrderCancel(String product, BookSide side, String orderId) throws NoSuchProductException, InvalidMarketStateException, Exception {
-        if (state == MarketState.CLOSED) {
-            throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
-        } else if (allBooks.get(product) == null) {
-            throw new NoSuchProductException("NoSuchProductException: No product on the books.");
-        } else {
-            ProductBook theBook = allBooks.get(product);
-            theBook.cancelOrder(side, orderId);
-        }
+    public void submitOrderCancel(final String product, final BookSide side, final String orderId) throws NoSuchProductException, InvalidMarketStateException, Exception {
+        final ProductBook theBook = findBook(product);
+        execute(theBook, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                if (stateOf(theBook) == MarketState.CLOSED) {
+                    throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
+                } else if (theBook == null) {
+                    throw new NoSuchProductException("NoSuchProductException: No product on the books.");
+                } else {
+                    theBook.cancelOrder(side, orderId);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * This method will forward the provided amend order to the appropriate
+     * book, where it is applied in one step.
+     *
+     * @param product symbol
+     * @param side of book
+     * @param orderId system ID
+     * @param newPrice of order
+     * @param newVolume new remaining volume
+     * @throws NoSuchProductException
+     * @throws InvalidMarketStateException
+     * @throws Exception
+     */
+    public void submitOrderAmend(final String product, final BookSide side, final String orderId, final Price newPrice, final int newVolume) throws NoSuchProductException, InvalidMarketStateException, Exception {
+        final ProductBook theBook = findBook(product);
+        execute(theBook, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                if (stateOf(theBook) == MarketState.CLOSED) {
+                    throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
+                } else if (theBook == null) {
+                    throw new NoSuchProductException("NoSuchProductException: No product on the books.");
+                } else {
+                    theBook.amendOrder(side, orderId, newPrice, newVolume);
+                }
+                return null;
+            }
+        });
     }
 
     /**
@@ -266,14 +763,219 @@ public class ProductService {
      * @throws InvalidMarketStateException
      * @throws Exception
      */
-    public synchronized void submitQuoteCancel(String userName, String product) throws NoSuchProductException, InvalidMarketStateException, Exception {
+    public void submitQuoteCancel(final String userName, final String product) throws NoSuchProductException, InvalidMarketStateException, Exception {
+        final ProductBook theBook = findBook(product);
+        execute(theBook, new Callable<Void>() {
+            @Override
+            public Void call() throws Exception {
+                if (stateOf(theBook) == MarketState.CLOSED) {
+                    throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
+                } else if (theBook == null) {
+                    throw new NoSuchProductException("NoSuchProductException: No product on the books.");
+                } else {
+                    theBook.cancelQuote(userName);
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Private method to look up a product book by the instrument id of its
+     * symbol, returning null for a null or unknown symbol.
+     *
+     * @param product symbol
+     * @return product book or null
+     */
+    private static ProductBook findBook(String product) {
+        if (product == null) {
+            return null;
+        }
+        int id = InstrumentDirectory.getInstance().getId(product);
+        ProductBook[] books = booksById;
+        return (id >= 0 && id < books.length) ? books[id] : null;
+    }
+
+    /**
+     * This method will run a command against a product book, either on the
+     * worker that owns the book while there are workers or under the service
+     * lock. The executor is held until the command has run, so it cannot be
+     * stopped under the command.
+     *
+     * @param theBook product book, or null for an unknown product
+     * @param task command to run
+     * @return result of command
+     * @throws Exception thrown by the command
+     */
+    private <T> T execute(ProductBook theBook, Callable<T> task) throws Exception {
+        int id = (theBook == null) ? InstrumentDirectory.NONE : theBook.getInstrumentId();
+        while (true) {
+            BookExecutor current = lockExecutor();
+            if (current != null) {
+                try {
+                    return current.execute(id, task);
+                } finally {
+                    executorLock.readLock().unlock();
+                }
+            }
+            synchronized (this) {
+                if (executor == null) {
+                    return task.call();
+                }
+            }
+        }
+    }
+
+    /**
+     * Private method to return the executor with the read lock held, or null
+     * with no lock held if there is no executor. A worker thread takes the
+     * lock even while an executor is waiting to be taken away, since the
+     * command it is running already holds the executor.
+     *
+     * @return executor, or null
+     */
+    private BookExecutor lockExecutor() {
+        Lock read = executorLock.readLock();
+        BookExecutor current = executor;
+        if (current == null || !current.isWorker(Thread.currentThread()) || !read.tryLock()) {
+            read.lock();
+        }
+        current = executor;
+        if (current == null) {
+            read.unlock();
+        }
+        return current;
+    }
+
+    /**
+     * Private method to return the market state of a product book, or the
+     * market state of the service for an unknown product.
+     *
+     * @param theBook product book, or null
+     * @return market state
+     */
+    private static MarketState stateOf(ProductBook theBook) {
+        return (theBook == null) ? state : theBook.getMarketState();
+    }
+
+    /**
+     * Private method to check a batch of orders grouped by product against the
+     * market state and the books.
+     *
+     * @param byProduct orders grouped by product
+     * @throws InvalidMarketStateException
+     * @throws NoSuchProductException
+     * @throws Exception
+     */
+    private void checkOrders(Map<String, ArrayList<Order>> byProduct) throws InvalidMarketStateException, NoSuchProductException, Exception {
         if (state == MarketState.CLOSED) {
             throw new InvalidMarketStateException("InvalidMarketStateException: Market is CLOSED.");
-        } else if (allBooks.get(product) == null) {
-            throw new NoSuchProductException("NoSuchProductException: No product on the books.");
-        } else {
-            ProductBook theBook = allBooks.get(product);
-            theBook.cancelQuote(userName);
+        }
+        for (Map.Entry<String, ArrayList<Order>> entryOrders : byProduct.entrySet()) {
+            ProductBook theBook = findBook(entryOrders.getKey());
+            if (theBook == null) {
+                throw new NoSuchProductException("NoSuchProductException: No product on the books.");
+            } else if (theBook.getMarketState() == MarketState.PREOPEN) {
+                for (Order o : entryOrders.getValue()) {
+                    if (o.getPrice().isMarket()) {
+                        throw new InvalidMarketStateException("InvalidMarketStateException: Market is PREOPEN, cannot submit Market orders during this time.");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Private method to wait for every queued task and then throw the first
+     * failure, if any.
+     *
+     * @param pending queued tasks
+     * @throws Exception
+     */
+    private void awaitAll(List<Future<Void>> pending) throws Exception {
+        Exception first = null;
+        for (Future<Void> f : pending) {
+            try {
+                BookExecutor.await(f);
+            } catch (Exception e) {
+                if (first == null) {
+                    first = e;
+                }
+            }
+        }
+        if (first != null) {
+            throw first;
+        }
+    }
+
+    /**
+     * This method will change every product book to the new market state in
+     * parallel and wait for all of them to finish, timing each one. Each book
+     * changes state on the worker that owns it, after any command already
+     * queued for it and before any later one. When not in sharded mode a
+     * temporary set of workers, one per processor at most, owns the books for
+     * the length of the change and is stopped afterwards, once every command
+     * that found it has run. The service lock is only held while the changes
+     * are queued, not while they run.
+     *
+     * @param ms new market state
+     * @throws Exception
+     */
+    private void changeAllBooks(final MarketState ms) throws Exception {
+        BookExecutor temporary = null;
+        ArrayList<Future<Void>> pending = new ArrayList<>();
+        synchronized (this) {
+            marketStateNanos.clear();
+            BookExecutor current = executor;
+            if (current == null) {
+                int workers = Math.min(allBooks.size(), Runtime.getRuntime().availableProcessors());
+                temporary = new BookExecutor(Math.max(workers, 1));
+                for (ProductBook theBook : allBooks.values()) {
+                    temporary.pin(theBook.getInstrumentId());
+                }
+                executor = temporary;
+                current = temporary;
+            }
+            for (Map.Entry<String, ProductBook> entryBook : allBooks.entrySet()) {
+                final String product = entryBook.getKey();
+                final ProductBook theBook = entryBook.getValue();
+                pending.add(current.submit(theBook.getInstrumentId(), new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        long start = System.nanoTime();
+                        try {
+                            if (ms == MarketState.OPEN) {
+                                theBook.openMarket();
+                            } else if (ms == MarketState.CLOSED) {
+                                theBook.closeMarket();
+                            } else {
+                                theBook.preOpenMarket();
+                            }
+                        } finally {
+                            marketStateNanos.put(product, System.nanoTime() - start);
+                        }
+                        return null;
+                    }
+                }));
+            }
+            state = ms;
+        }
+        try {
+            awaitAll(pending);
+        } finally {
+            if (temporary != null) {
+                executorLock.writeLock().lock();
+                try {
+                    synchronized (this) {
+                        if (executor == temporary) {
+                            executor = null;
+                        }
+                    }
+                    temporary.shutdown();
+                } finally {
+                    executorLock.writeLock().unlock();
+                }
+            }
         }
     }
 
@@ -283,7 +985,7 @@ public class ProductService {
      *
      * @param ms new Market State
      */
-    private synchronized void check(MarketState ms) throws InvalidMarketStateTransition {
+    private void check(MarketState ms) throws InvalidMarketStateTransition {
         if (state == MarketState.CLOSED) {
             if (ms == MarketState.OPEN) {
                 throw new InvalidMarketStateTransition("InvalidMarketStateTransition: Market cannot go directly from CLOSED to OPEN.");
@@ -0,0 +1,194 @@
+/*
+ * RetiredOrderStore.java
+ */
+package book;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import tradable.Tradable;
+import tradable.TradableId;
+
+/**
+ * This class remembers orders that have left a book, filled or cancelled, so
+ * that a late cancel can be answered with "Too late to Cancel".<br> Orders are
+ * kept by id in retirement order and dropped once the store holds more than
+ * its maximum number of orders or an order is older than the maximum age.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+class RetiredOrderStore {
+
+    /**
+     * Retired orders by numeric id.
+     */
+    private final LongHashMap<RetiredOrder> entries = new LongHashMap<>();
+    /**
+     * Retired orders, oldest first.
+     */
+    private final ArrayDeque<RetiredOrder> order = new ArrayDeque<>();
+    /**
+     * Largest number of orders kept, 0 for no limit.
+     */
+    private int maxEntries;
+    /**
+     * Longest time in nanoseconds an order is kept, 0 for no limit.
+     */
+    private long maxAgeNanos;
+
+    /**
+     * Package-visible construction method for a store with the given
+     * retention.
+     *
+     * @param maxEntries largest number of orders kept, 0 for no limit
+     * @param maxAgeMillis longest time an order is kept, 0 for no limit
+     */
+    RetiredOrderStore(int maxEntries, long maxAgeMillis) {
+        setRetention(maxEntries, maxAgeMillis);
+    }
+
+    /**
+     * This method will change the retention and drop any orders that are now
+     * outside it.
+     *
+     * @param maxEntries largest number of orders kept, 0 for no limit
+     * @param maxAgeMillis longest time an order is kept, 0 for no limit
+     */
+    final void setRetention(int maxEntries, long maxAgeMillis) {
+        this.maxEntries = maxEntries;
+        this.maxAgeNanos = maxAgeMillis * 1000000L;
+        trim();
+        expire(System.nanoTime());
+    }
+
+    /**
+     * Returns the number of orders held.
+     *
+     * @return number of orders
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * This method will remember a retired order.
+     *
+     * @param t order
+     */
+    void add(Tradable t) {
+        long now = System.nanoTime();
+        expire(now);
+        put(t, now);
+        trim();
+    }
+
+    /**
+     * This method will remember a list of orders retired together.
+     *
+     * @param orders retired orders
+     */
+    void addAll(List<Tradable> orders) {
+        long now = System.nanoTime();
+        expire(now);
+        for (Tradable t : orders) {
+            put(t, now);
+        }
+        trim();
+    }
+
+    /**
+     * Returns the retired order with the id, or null if it was never retired
+     * or is no longer held.
+     *
+     * @param orderId of order
+     * @return order or null
+     */
+    Tradable get(String orderId) {
+        expire(System.nanoTime());
+        RetiredOrder e = entries.get(TradableId.parse(orderId));
+        if (e == null) {
+            return null;
+        }
+        return e.tradable;
+    }
+
+    /**
+     * Private method to store one retired order as the newest.
+     *
+     * @param t order
+     * @param now time retired
+     */
+    private void put(Tradable t, long now) {
+        RetiredOrder e = new RetiredOrder(t, now);
+        entries.put(t.getNumericId(), e);
+        order.addLast(e);
+    }
+
+    /**
+     * Private method to drop the oldest orders while there are more than the
+     * maximum number.
+     */
+    private void trim() {
+        if (maxEntries <= 0) {
+            return;
+        }
+        while (entries.size() > maxEntries && !order.isEmpty()) {
+            drop(order.removeFirst());
+        }
+    }
+
+    /**
+     * Private method to drop the oldest orders while they are past the
+     * maximum age.
+     *
+     * @param now current time
+     */
+    private void expire(long now) {
+        if (maxAgeNanos <= 0) {
+            return;
+        }
+        while (!order.isEmpty() && now - order.peekFirst().retiredNanos > maxAgeNanos) {
+            drop(order.removeFirst());
+        }
+    }
+
+    /**
+     * Private method to forget an order taken off the front of the queue,
+     * unless it has been retired again since.
+     *
+     * @param e retired order
+     */
+    private void drop(RetiredOrder e) {
+        long id = e.tradable.getNumericId();
+        if (entries.get(id) == e) {
+            entries.remove(id);
+        }
+    }
+
+    /**
+     * This class is one retired order and when it was retired.
+     */
+    private static final class RetiredOrder {
+
+        /**
+         * Retired order.
+         */
+        private final Tradable tradable;
+        /**
+         * Time the order was retired.
+         */
+        private final long retiredNanos;
+
+        /**
+         * Private construction method for a new entry.
+         *
+         * @param t order
+         * @param now time retired
+         */
+        private RetiredOrder(Tradable t, long now) {
+            this.tradable = t;
+            this.retiredNanos = now;
+        }
+    }
+}
+//end of file
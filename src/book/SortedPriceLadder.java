@@ -0,0 +1,223 @@
+/*
+ * SortedPriceLadder.java
+ */
+package book;
+
+import constants.BookSide;
+import java.util.ArrayList;
+import price.Price;
+
+/**
+ * This class keeps the price levels of one side of a book in a sorted list,
+ * ascending for SELL and descending for BUY.<br> Levels are stored worst to
+ * best so that the best level sits at the tail, which makes best level access
+ * and removal constant time. It suits any price range.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+class SortedPriceLadder implements PriceLadder {
+
+    /**
+     * All price levels, sorted from worst to best.
+     */
+    private final ArrayList<PriceLevel> levels = new ArrayList<>();
+    /**
+     * Side that this ladder represents.
+     */
+    private final BookSide side;
+
+    /**
+     * Package-visible construction method to create a new ladder for a side.
+     *
+     * @param side of book
+     */
+    SortedPriceLadder(BookSide side) {
+        this.side = side;
+    }
+
+    /**
+     * Returns true if there are no levels in the ladder.
+     *
+     * @return true if empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return levels.isEmpty();
+    }
+
+    /**
+     * Returns the number of price levels in the ladder.
+     *
+     * @return number of levels
+     */
+    @Override
+    public int size() {
+        return levels.size();
+    }
+
+    /**
+     * Returns the next level after the given one, going from best to worst, or
+     * null if it is the worst.
+     *
+     * @param level in the ladder
+     * @return next worse level
+     */
+    @Override
+    public PriceLevel nextLevel(PriceLevel level) {
+        int index = find(level.getPrice());
+        if (index <= 0) {
+            return null;
+        }
+        return levels.get(index - 1);
+    }
+
+    /**
+     * Returns the best level worse than the price, which need not be in the
+     * ladder, or null if there is none.
+     *
+     * @param p price
+     * @return next worse level
+     */
+    PriceLevel levelAfter(Price p) {
+        int index = find(p);
+        int worse = (index >= 0) ? index : -(index + 1);
+        if (worse <= 0) {
+            return null;
+        }
+        return levels.get(worse - 1);
+    }
+
+    /**
+     * Returns the best price in the ladder or null if empty.
+     *
+     * @return best price
+     */
+    @Override
+    public Price bestPrice() {
+        if (levels.isEmpty()) {
+            return null;
+        }
+        return levels.get(levels.size() - 1).getPrice();
+    }
+
+    /**
+     * Returns the level at the best price or null if empty.
+     *
+     * @return level at best price
+     */
+    @Override
+    public PriceLevel bestLevel() {
+        if (levels.isEmpty()) {
+            return null;
+        }
+        return levels.get(levels.size() - 1);
+    }
+
+    /**
+     * Returns the level at the price or null if there is no such level.
+     *
+     * @param p price
+     * @return level at price
+     */
+    @Override
+    public PriceLevel get(Price p) {
+        int index = find(p);
+        if (index < 0) {
+            return null;
+        }
+        return levels.get(index);
+    }
+
+    /**
+     * Returns the level at the price, creating a new level if needed.
+     *
+     * @param p price
+     * @return level at price
+     */
+    @Override
+    public PriceLevel getOrCreate(Price p) {
+        int index = find(p);
+        if (index >= 0) {
+            return levels.get(index);
+        }
+        int insertAt = -(index + 1);
+        PriceLevel level = new PriceLevel(p);
+        levels.add(insertAt, level);
+        return level;
+    }
+
+    /**
+     * Removes the level at the price if present.
+     *
+     * @param p price
+     * @return true if a level was removed
+     */
+    @Override
+    public boolean remove(Price p) {
+        int index = find(p);
+        if (index < 0) {
+            return false;
+        }
+        levels.remove(index);
+        return true;
+    }
+
+    /**
+     * Removes every level from the ladder.
+     */
+    @Override
+    public void clear() {
+        levels.clear();
+    }
+
+    /**
+     * Binary search for the price, checking the best level first as that is
+     * where nearly all activity happens.
+     *
+     * @param p price
+     * @return index of level, or (-(insertion point) - 1) if not present
+     */
+    private int find(Price p) {
+        int high = levels.size() - 1;
+        if (high < 0) {
+            return -1;
+        }
+        int c = rank(levels.get(high).getPrice(), p);
+        if (c == 0) {
+            return high;
+        } else if (c < 0) {
+            return -(high + 2);
+        }
+        int low = 0;
+        high = high - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            c = rank(levels.get(mid).getPrice(), p);
+            if (c < 0) {
+                low = mid + 1;
+            } else if (c > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * Compares two prices by how good they are for this side, negative if a
+     * is worse than b.
+     *
+     * @param a price
+     * @param b price
+     * @return comparison of a and b
+     */
+    private int rank(Price a, Price b) {
+        if (side == BookSide.BUY) {
+            return a.compareTo(b);
+        }
+        return b.compareTo(a);
+    }
+}
+//end of file
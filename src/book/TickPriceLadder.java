@@ -0,0 +1,378 @@
+/*
+ * TickPriceLadder.java
+ */
+package book;
+
+import constants.BookSide;
+import price.Price;
+
+/**
+ * This class keeps the price levels of one side of a book in a circular array
+ * indexed by price in cents, with a bitmap of the slots that hold a level.<br>
+ * A level lives in slot (cents mod capacity), so finding, adding and removing
+ * a level needs no search, boxing or hashing. The window of prices the array
+ * covers follows the levels in it: prices may drift anywhere as long as the
+ * lowest and highest level stay less than the capacity apart, and the array
+ * doubles when they do not, up to MAX_CAPACITY slots. A price too far from
+ * the levels in the array to fit even then is kept in a sorted overflow
+ * ladder instead, so an outlier price costs a little search rather than a
+ * huge array. The best price is tracked, and the next one is found by
+ * scanning the bitmap a word at a time.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+class TickPriceLadder implements PriceLadder {
+
+    /**
+     * Number of slots a new ladder starts with, a power of two and at least
+     * 64.
+     */
+    private static final int INITIAL_CAPACITY = 1024;
+    /**
+     * Most slots the array may grow to, a power of two. Levels in the array
+     * are always less than this many cents apart.
+     */
+    static final int MAX_CAPACITY = 1 << 16;
+    /**
+     * Marker for no price found.
+     */
+    private static final long NONE = Long.MIN_VALUE;
+    /**
+     * Side that this ladder represents.
+     */
+    private final BookSide side;
+    /**
+     * Level in each slot, or null.
+     */
+    private PriceLevel[] slots = new PriceLevel[INITIAL_CAPACITY];
+    /**
+     * One bit per slot, set if the slot holds a level.
+     */
+    private long[] bits = new long[INITIAL_CAPACITY / 64];
+    /**
+     * Mask from price in cents to slot.
+     */
+    private int mask = INITIAL_CAPACITY - 1;
+    /**
+     * Number of limit price levels.
+     */
+    private int count;
+    /**
+     * Lowest limit price in cents, valid while count is above 0.
+     */
+    private long lowest;
+    /**
+     * Highest limit price in cents, valid while count is above 0.
+     */
+    private long highest;
+    /**
+     * Levels whose price did not fit in the array, created when first needed.
+     */
+    private SortedPriceLadder overflow;
+
+    /**
+     * Package-visible construction method to create a new ladder for a side.
+     *
+     * @param side of book
+     */
+    TickPriceLadder(BookSide side) {
+        this.side = side;
+    }
+
+    /**
+     * Returns true if there are no levels in the ladder.
+     *
+     * @return true if empty
+     */
+    @Override
+    public boolean isEmpty() {
+        return count == 0 && (overflow == null || overflow.isEmpty());
+    }
+
+    /**
+     * Returns the number of price levels in the ladder.
+     *
+     * @return number of levels
+     */
+    @Override
+    public int size() {
+        return (overflow == null) ? count : count + overflow.size();
+    }
+
+    /**
+     * Returns the best price in the ladder or null if empty.
+     *
+     * @return best price
+     */
+    @Override
+    public Price bestPrice() {
+        PriceLevel level = bestLevel();
+        if (level == null) {
+            return null;
+        }
+        return level.getPrice();
+    }
+
+    /**
+     * Returns the level at the best price or null if empty.
+     *
+     * @return level at best price
+     */
+    @Override
+    public PriceLevel bestLevel() {
+        PriceLevel level = (count == 0) ? null : slots[slot((side == BookSide.BUY) ? highest : lowest)];
+        if (overflow == null) {
+            return level;
+        }
+        return better(level, overflow.bestLevel());
+    }
+
+    /**
+     * Returns the next level after the given one, going from best to worst, or
+     * null if it is the worst.
+     *
+     * @param level in the ladder
+     * @return next worse level
+     */
+    @Override
+    public PriceLevel nextLevel(PriceLevel level) {
+        long cents = level.getPrice().getValue();
+        long next = NONE;
+        if (count > 0) {
+            if (side == BookSide.BUY) {
+                next = (cents > lowest) ? previousPresent(Math.min(cents - 1, highest), lowest) : NONE;
+            } else {
+                next = (cents < highest) ? nextPresent(Math.max(cents + 1, lowest), highest) : NONE;
+            }
+        }
+        PriceLevel found = (next == NONE) ? null : slots[slot(next)];
+        if (overflow == null) {
+            return found;
+        }
+        return better(found, overflow.levelAfter(level.getPrice()));
+    }
+
+    /**
+     * Returns the level at the price or null if there is no such level.
+     *
+     * @param p price
+     * @return level at price
+     */
+    @Override
+    public PriceLevel get(Price p) {
+        PriceLevel level = arrayGet(p.getValue());
+        if (level == null && overflow != null) {
+            return overflow.get(p);
+        }
+        return level;
+    }
+
+    /**
+     * Returns the level at the price, creating a new level if needed.
+     *
+     * @param p price
+     * @return level at price
+     */
+    @Override
+    public PriceLevel getOrCreate(Price p) {
+        PriceLevel level = get(p);
+        if (level != null) {
+            return level;
+        }
+        long cents = p.getValue();
+        if (count == 0) {
+            lowest = cents;
+            highest = cents;
+        } else {
+            long low = Math.min(lowest, cents);
+            long high = Math.max(highest, cents);
+            if (high - low >= MAX_CAPACITY || high - low < 0) {
+                if (overflow == null) {
+                    overflow = new SortedPriceLadder(side);
+                }
+                return overflow.getOrCreate(p);
+            }
+            if (high - low > mask) {
+                grow(high - low);
+            }
+            lowest = low;
+            highest = high;
+        }
+        int index = slot(cents);
+        level = new PriceLevel(p);
+        slots[index] = level;
+        bits[index >>> 6] |= 1L << index;
+        count++;
+        return level;
+    }
+
+    /**
+     * Removes the level at the price if present.
+     *
+     * @param p price
+     * @return true if a level was removed
+     */
+    @Override
+    public boolean remove(Price p) {
+        long cents = p.getValue();
+        if (arrayGet(cents) == null) {
+            return (overflow != null) && overflow.remove(p);
+        }
+        int index = slot(cents);
+        slots[index] = null;
+        bits[index >>> 6] &= ~(1L << index);
+        count--;
+        if (count > 0) {
+            if (cents == lowest) {
+                lowest = nextPresent(cents + 1, highest);
+            } else if (cents == highest) {
+                highest = previousPresent(cents - 1, lowest);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes every level from the ladder.
+     */
+    @Override
+    public void clear() {
+        if (count > 0) {
+            for (long cents = lowest; cents != NONE; cents = nextPresent(cents + 1, highest)) {
+                int index = slot(cents);
+                slots[index] = null;
+                bits[index >>> 6] &= ~(1L << index);
+                if (cents == highest) {
+                    break;
+                }
+            }
+        }
+        count = 0;
+        if (overflow != null) {
+            overflow.clear();
+        }
+    }
+
+    /**
+     * Private method to return the level in the array at a price in cents or
+     * null if there is no such level.
+     *
+     * @param cents price
+     * @return level at price
+     */
+    private PriceLevel arrayGet(long cents) {
+        if (count == 0 || cents < lowest || cents > highest) {
+            return null;
+        }
+        return slots[slot(cents)];
+    }
+
+    /**
+     * Private method to return the better priced of two levels, either of
+     * which may be null.
+     *
+     * @param a level or null
+     * @param b level or null
+     * @return better level, or null if both are null
+     */
+    private PriceLevel better(PriceLevel a, PriceLevel b) {
+        if (a == null) {
+            return b;
+        } else if (b == null) {
+            return a;
+        }
+        long ca = a.getPrice().getValue();
+        long cb = b.getPrice().getValue();
+        if (side == BookSide.BUY) {
+            return (cb > ca) ? b : a;
+        }
+        return (cb < ca) ? b : a;
+    }
+
+    /**
+     * Private method to map a price in cents to its slot.
+     *
+     * @param cents price
+     * @return slot index
+     */
+    private int slot(long cents) {
+        return (int) (cents & mask);
+    }
+
+    /**
+     * Private method to find the lowest price from one price up to another
+     * that holds a level. The range must be narrower than the capacity.
+     *
+     * @param from lowest price in cents to look at
+     * @param to highest price in cents to look at
+     * @return price found, or NONE
+     */
+    private long nextPresent(long from, long to) {
+        long cents = from;
+        while (cents <= to) {
+            int index = slot(cents);
+            int bit = index & 63;
+            long word = bits[index >>> 6] >>> bit;
+            if (word != 0) {
+                long found = cents + Long.numberOfTrailingZeros(word);
+                return (found <= to) ? found : NONE;
+            }
+            cents += 64 - bit;
+        }
+        return NONE;
+    }
+
+    /**
+     * Private method to find the highest price from one price down to another
+     * that holds a level. The range must be narrower than the capacity.
+     *
+     * @param from highest price in cents to look at
+     * @param to lowest price in cents to look at
+     * @return price found, or NONE
+     */
+    private long previousPresent(long from, long to) {
+        long cents = from;
+        while (cents >= to) {
+            int index = slot(cents);
+            int bit = index & 63;
+            long word = bits[index >>> 6] << (63 - bit);
+            if (word != 0) {
+                long found = cents - Long.numberOfLeadingZeros(word);
+                return (found >= to) ? found : NONE;
+            }
+            cents -= bit + 1;
+        }
+        return NONE;
+    }
+
+    /**
+     * Private method to enlarge the array so that prices the given distance
+     * apart fit, moving every level to its slot in the new array. The span
+     * must be less than MAX_CAPACITY.
+     *
+     * @param span distance in cents between the lowest and highest price
+     */
+    private void grow(long span) {
+        int capacity = slots.length;
+        while (capacity - 1 < span) {
+            capacity <<= 1;
+        }
+        PriceLevel[] oldSlots = slots;
+        int oldMask = mask;
+        long from = lowest;
+        long to = highest;
+        slots = new PriceLevel[capacity];
+        bits = new long[capacity / 64];
+        mask = capacity - 1;
+        for (long cents = from; cents <= to; cents++) {
+            PriceLevel level = oldSlots[(int) (cents & oldMask)];
+            if (level != null) {
+                int index = slot(cents);
+                slots[index] = level;
+                bits[index >>> 6] |= 1L << index;
+            }
+        }
+    }
+}
+//end of file
@@ -3,8 +3,6 @@
  */
 package book;
 
-import java.util.HashMap;
-import publishers.FillMessage;
 import tradable.Tradable;
 
 /**
@@ -20,8 +18,8 @@ public interface TradeProcessor {
      * can trade.
      *
      * @param trd the tradable object
-     * @return a HashMap of Fill messages
+     * @param fills buffer the resulting fills are recorded in
      * @throws Exception
      */
-    public HashMap<String, FillMessage> doTrade(Tradable trd) throws Exception;
+    public void doTrade(Tradable trd, FillBuffer fills) throws Exception;
 }
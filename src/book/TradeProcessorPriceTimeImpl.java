@@ -4,10 +4,7 @@
 package book;
 
 import exceptions.ExceptionHandler;
-import java.util.ArrayList;
-import java.util.HashMap;
 import price.Price;
-import publishers.FillMessage;
 import tradable.Tradable;
 
 /**
@@ -18,10 +15,6 @@ import tradable.Tradable;
  */
 public class TradeProcessorPriceTimeImpl implements TradeProcessor {
 
-    /**
-     * Map of fill messages.
-     */
-    private HashMap<String, FillMessage> fillMessages = new HashMap<>();
     /**
      * Reference to book side.
      */
@@ -49,123 +42,52 @@ public class TradeProcessorPriceTimeImpl implements TradeProcessor {
         }
     }
 
-    /**
-     * This method will make a string key for the fill message.
-     *
-     * @param fm fill message
-     * @throws Exception
-     */
-    private String makeFillKey(FillMessage fm) throws Exception {
-        String fillKey = (fm.getUser() + fm.getId() + fm.getPrice().toString());
-        return fillKey;
-    }
-
-    /**
-     * This method checks the content of the fillMessages to see if the
-     * FillMessage is a fill message for an existing known trade.
-     *
-     * @param fm fill message
-     * @return boolean if fill message is a new trade
-     * @throws Exception
-     */
-    private boolean isNewFill(FillMessage fm) throws Exception {
-        String fillKey = makeFillKey(fm);
-        if (fillMessages.get(fillKey) == null) {
-            return true;
-        } else {
-            FillMessage oldFill = fillMessages.get(fillKey);
-            if (oldFill.getSide() != fm.getSide()) {
-                return true;
-            }
-            String oldId = oldFill.getId();
-            String newId = fm.getId();
-            if (!oldId.equals(newId)) {
-                return true;
-            } else {
-                return false;
-            }
-        }
-    }
-
-    /**
-     * This method will add a fill message to the fillMessages if it is a new
-     * trade or update an existing fill message as another part of an existing
-     * trade.
-     *
-     * @param fm fill message
-     * @throws Exception
-     */
-    private void addFillMessage(FillMessage fm) throws Exception {
-        if (isNewFill(fm)) {
-            String fillKey = makeFillKey(fm);
-            fillMessages.put(fillKey, fm);
-        } else {
-            String fillKey = makeFillKey(fm);
-            FillMessage updateFill = fillMessages.get(fillKey);
-            updateFill.setVolume(fm.getVolume() + updateFill.getVolume());
-            updateFill.setDetails(fm.getDetails());
-        }
-    }
-
     /**
      * This method will be called when it has been determined that a tradable
-     * can trade against the content of the book.
+     * can trade against the content of the book. Fills are written into the
+     * buffer passed in, so nothing is allocated per fill. Fills are at the
+     * price of the top level, or at the tradable's own price against the
+     * market order queue.
      *
      * @param trd tradable
-     * @return HashMap of fill messages
+     * @param fills buffer the resulting fills are recorded in
      * @throws Exception
      */
     @Override
-    public HashMap<String, FillMessage> doTrade(Tradable trd) throws Exception {
-        fillMessages = new HashMap<>();
-        ArrayList<Tradable> tradedOut = new ArrayList<>();
-        ArrayList<Tradable> entriesAtPrice = new ArrayList<>();
-        entriesAtPrice = bookSide.getEntriesAtTopOfBook();
-        for (Tradable t : entriesAtPrice) {
-            if (trd.getRemainingVolume() <= 0) {
-                break;
+    public void doTrade(Tradable trd, FillBuffer fills) throws Exception {
+        PriceLevel entriesAtPrice = bookSide.getEntriesAtTopOfBook();
+        Price tPrice = entriesAtPrice.getPrice();
+        if (tPrice.isMarket()) {
+            tPrice = trd.getPrice();
+        }
+        PriceLevel.Node n = entriesAtPrice.getFirst();
+        while (n != null && trd.getRemainingVolume() > 0) {
+            Tradable t = n.getTradable();
+            PriceLevel.Node next = n.getNext();
+            if (trd.getRemainingVolume() >= t.getRemainingVolume()) {
+                int volume = t.getRemainingVolume();
+                int remainder = (trd.getRemainingVolume() - volume);
+                fills.addFill(t, tPrice, volume, 0);
+                fills.addAggressorFill(trd, tPrice, volume, remainder);
+                trd.setRemainingVolume(remainder);
+                entriesAtPrice.reduce(n, volume);
+                entriesAtPrice.pop();
+                bookSide.removeFromIndex(t);
+                bookSide.addOldEntry(t);
             } else {
-                if (trd.getRemainingVolume() >= t.getRemainingVolume()) {
-                    tradedOut.add(t);
-                    Price tPrice;
-                    if (t.getPrice().isMarket()) {
-                        tPrice = trd.getPrice();
-                    } else {
-                        tPrice = t.getPrice();
-                    }
-                    int remainder = (trd.getRemainingVolume() - t.getRemainingVolume());
-                    FillMessage fmT = new FillMessage(t.getUser(), t.getProduct(), tPrice, t.getRemainingVolume(), "leaving 0", t.getSide(), t.getId());
-                    addFillMessage(fmT);
-                    FillMessage fmTrd = new FillMessage(trd.getUser(), trd.getProduct(), tPrice, t.getRemainingVolume(), ("leaving " + remainder), trd.getSide(), trd.getId());
-                    addFillMessage(fmTrd);
-                    trd.setRemainingVolume(trd.getRemainingVolume() - t.getRemainingVolume());
-                    t.setRemainingVolume(0);
-                    bookSide.addOldEntry(t);
-                } else {
-                    int remainder = (t.getRemainingVolume() - trd.getRemainingVolume());
-                    Price tPrice;
-                    if (t.getPrice().isMarket()) {
-                        tPrice = trd.getPrice();
-                    } else {
-                        tPrice = t.getPrice();
-                    }
-                    FillMessage fmT = new FillMessage(t.getUser(), t.getProduct(), tPrice, trd.getRemainingVolume(), ("leaving " + remainder), t.getSide(), t.getId());
-                    addFillMessage(fmT);
-                    FillMessage fmTrd = new FillMessage(trd.getUser(), trd.getProduct(), tPrice, trd.getRemainingVolume(), "leaving 0", trd.getSide(), trd.getId());
-                    addFillMessage(fmTrd);
-                    trd.setRemainingVolume(0);
-                    t.setRemainingVolume(remainder);
-                    bookSide.addOldEntry(trd);
-                }
+                int volume = trd.getRemainingVolume();
+                int remainder = (t.getRemainingVolume() - volume);
+                fills.addFill(t, tPrice, volume, remainder);
+                fills.addAggressorFill(trd, tPrice, volume, 0);
+                entriesAtPrice.reduce(n, volume);
+                trd.setRemainingVolume(0);
+                bookSide.addOldEntry(trd);
             }
-        }
-        for (Tradable t : tradedOut) {
-            entriesAtPrice.remove(t);
+            n = next;
         }
         if (entriesAtPrice.isEmpty()) {
-            bookSide.clearIfEmpty(bookSide.topOfBookPrice());
+            bookSide.clearIfEmpty(entriesAtPrice.getPrice());
         }
-        return fillMessages;
     }
 }
 //end of file
\ No newline at end of file
@@ -0,0 +1,128 @@
+/*
+ * UncrossingAuction.java
+ */
+package book;
+
+import price.Price;
+
+/**
+ * This class finds the single price at which a crossed book is uncrossed when
+ * the market opens.<br> The clearing price is the limit price in the book
+ * that lets the most volume trade. Ties go to the price that leaves the
+ * smallest surplus, then to the higher price if buyers are left over and the
+ * lower price otherwise. Market priced entries count on every price. It is
+ * found in one pass over the cumulative depth of both sides, merged from the
+ * lowest price up. Without market priced entries only the levels where the
+ * two sides overlap can trade, so only those are read.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+final class UncrossingAuction {
+
+    /**
+     * Clearing price, or null if nothing can trade.
+     */
+    private Price price;
+    /**
+     * Volume that trades at the clearing price.
+     */
+    private long volume;
+
+    /**
+     * Package-visible construction method to find the clearing price and
+     * volume of the two sides of a book.
+     *
+     * @param buySide buy side of book
+     * @param sellSide sell side of book
+     */
+    UncrossingAuction(ProductBookSide buySide, ProductBookSide sellSide) {
+        Price buyWorst = null;
+        Price sellWorst = null;
+        if (buySide.getMarketVolume() == 0 && sellSide.getMarketVolume() == 0) {
+            buyWorst = sellSide.bestLimitPrice();
+            sellWorst = buySide.bestLimitPrice();
+            if (buyWorst == null || sellWorst == null) {
+                return;
+            }
+        }
+        Price[] buyPrices = new Price[buySide.getLimitLevelCount(buyWorst)];
+        int[] buyVolumes = new int[buyPrices.length];
+        buySide.getLimitDepth(buyPrices, buyVolumes);
+        Price[] sellPrices = new Price[sellSide.getLimitLevelCount(sellWorst)];
+        int[] sellVolumes = new int[sellPrices.length];
+        sellSide.getLimitDepth(sellPrices, sellVolumes);
+        long buyBelow = 0;
+        long buyTotal = buySide.getMarketVolume();
+        for (int v : buyVolumes) {
+            buyTotal += v;
+        }
+        long sellAtOrBelow = sellSide.getMarketVolume();
+        long bestSurplus = 0;
+        int b = buyPrices.length - 1;
+        int s = 0;
+        while (b >= 0 || s < sellPrices.length) {
+            Price p;
+            if (b < 0) {
+                p = sellPrices[s];
+            } else if (s >= sellPrices.length) {
+                p = buyPrices[b];
+            } else {
+                p = (buyPrices[b].getValue() <= sellPrices[s].getValue()) ? buyPrices[b] : sellPrices[s];
+            }
+            long cents = p.getValue();
+            while (s < sellPrices.length && sellPrices[s].getValue() <= cents) {
+                sellAtOrBelow += sellVolumes[s];
+                s++;
+            }
+            long demand = buyTotal - buyBelow;
+            while (b >= 0 && buyPrices[b].getValue() <= cents) {
+                buyBelow += buyVolumes[b];
+                b--;
+            }
+            long executable = Math.min(demand, sellAtOrBelow);
+            long surplus = demand - sellAtOrBelow;
+            if (isBetter(executable, surplus, volume, bestSurplus)) {
+                price = p;
+                volume = executable;
+                bestSurplus = surplus;
+            }
+        }
+    }
+
+    /**
+     * Package visible method to decide if a price is a better clearing price
+     * than the best found so far: more volume trades, or as much trades with
+     * a smaller surplus, or as much with the same surplus left to buyers.
+     *
+     * @param executable volume that trades at the price
+     * @param surplus buy volume less sell volume at the price
+     * @param bestVolume volume that trades at the best price so far
+     * @param bestSurplus surplus at the best price so far
+     * @return true if the price is better
+     */
+    static boolean isBetter(long executable, long surplus, long bestVolume, long bestSurplus) {
+        return executable > bestVolume
+                || (executable == bestVolume && executable > 0
+                && (Math.abs(surplus) < Math.abs(bestSurplus) || (Math.abs(surplus) == Math.abs(bestSurplus) && surplus > 0)));
+    }
+
+    /**
+     * Returns the clearing price, or null if nothing can trade.
+     *
+     * @return clearing price
+     */
+    Price getPrice() {
+        return price;
+    }
+
+    /**
+     * Returns the volume that trades at the clearing price on each side.
+     *
+     * @return volume
+     */
+    long getVolume() {
+        return volume;
+    }
+}
+//end of file
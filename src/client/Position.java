@@ -5,13 +5,15 @@ package client;
 
 import constants.BookSide;
 import exceptions.ExceptionHandler;
+import exceptions.InvalidValueException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
 import price.Price;
+import price.PriceAccumulator;
 import price.PriceFactory;
+import price.PriceMath;
+import tradable.InstrumentDirectory;
 
 /**
  * This class is used to hold an individual users profits and losses.
@@ -22,17 +24,19 @@ import price.PriceFactory;
 public class Position {
 
     /**
-     * Stock/Volume holdings of the user.
+     * Stock/Volume holdings of the user, indexed by the instrument id of the
+     * stock symbol, 0 if none.
      */
-    private HashMap<String, Integer> holdings;
+    private int[] holdings;
     /**
-     * Running Account costs of user.
+     * Running Account costs of user, in cents.
      */
-    private Price accountCosts;
+    private PriceAccumulator accountCosts;
     /**
-     * Last sales of the user.
+     * Last sales of the user, indexed by the instrument id of the stock
+     * symbol.
      */
-    private HashMap<String, Price> lastSales;
+    private Price[] lastSales;
 
     /**
      * Public construction method for creating a new position object.
@@ -40,9 +44,9 @@ public class Position {
      * @throws Exception
      */
     public Position() throws Exception {
-        accountCosts = price.PriceFactory.makeLimitPrice("$0.00");
-        lastSales = new HashMap<>();
-        holdings = new HashMap<>();
+        accountCosts = new PriceAccumulator();
+        lastSales = new Price[0];
+        holdings = new int[0];
     }
 
     /**
@@ -65,28 +69,20 @@ public class Position {
             } else {
                 adjustedVolume = (-volume);
             }
-            if (holdings.get(product) == null || holdings.isEmpty()) {
-                holdings.put(product, adjustedVolume);
-            } else {
-                int holdingVolume = holdings.get(product);
-                holdingVolume = holdingVolume + adjustedVolume;
-                if (holdingVolume == 0) {
-                    holdings.remove(product);
-                } else {
-                    holdings.put(product, holdingVolume);
-                }
-            }
-            Price totalPrice = price.multiply(volume);
+            int id = slot(product);
+            holdings[id] = holdings[id] + adjustedVolume;
             if (side == BookSide.BUY) {
-                accountCosts = accountCosts.subtract(totalPrice);
+                accountCosts.subtractProduct(price, volume);
             } else {
-                accountCosts = accountCosts.add(totalPrice);
+                accountCosts.addProduct(price, volume);
             }
         }
     }
 
     /**
      * This method will insert the last sale for the stock into the last sales.
+     * A last sale for a symbol that is not a product is ignored, since no
+     * fill can be recorded for it.
      *
      * @param product
      * @param price
@@ -95,7 +91,11 @@ public class Position {
     public void updateLastSale(String product, Price price) throws Exception {
         String thisClass = "client.Position#updateLastSale.";
         if (ExceptionHandler.checkString(product, thisClass) && ExceptionHandler.checkObject(price, thisClass)) {
-            lastSales.put(product, price);
+            int id = InstrumentDirectory.getInstance().getId(product);
+            if (id != InstrumentDirectory.NONE) {
+                fit(id);
+                lastSales[id] = price;
+            }
         }
     }
 
@@ -106,10 +106,11 @@ public class Position {
      * @return integer volume
      */
     public int getStockPositionVolume(String product) {
-        if (holdings.get(product) == null) {
+        int id = InstrumentDirectory.getInstance().getId(product);
+        if (id < 0 || id >= holdings.length) {
             return 0;
         } else {
-            int positionVolume = holdings.get(product);
+            int positionVolume = holdings[id];
             return positionVolume;
         }
     }
@@ -121,7 +122,12 @@ public class Position {
      * @return ArrayList of stock symbols
      */
     public ArrayList<String> getHoldings() {
-        ArrayList<String> h = new ArrayList(holdings.keySet());
+        ArrayList<String> h = new ArrayList<>();
+        for (int id = 0; id < holdings.length; id++) {
+            if (holdings[id] != 0) {
+                h.add(InstrumentDirectory.getInstance().getSymbol(id));
+            }
+        }
         Collections.sort(h);
         return h;
     }
@@ -134,18 +140,7 @@ public class Position {
      * @throws Exception
      */
     public Price getStockPositionValue(String product) throws Exception {
-        if (holdings.get(product) == null) {
-            Price p = PriceFactory.makeLimitPrice("$0.00");
-            return p;
-        } else {
-            Price lastSale = lastSales.get(product);
-            if (lastSale == null) {
-                lastSale = PriceFactory.makeLimitPrice("$0.00");
-            }
-            int volume = holdings.get(product);
-            lastSale = lastSale.multiply(volume);
-            return lastSale;
-        }
+        return getStockPositionValue(InstrumentDirectory.getInstance().getId(product));
     }
 
     /**
@@ -154,7 +149,7 @@ public class Position {
      * @return current Account
      */
     public Price getAccountCosts() {
-        Price p = accountCosts;
+        Price p = accountCosts.toPrice();
         return p;
     }
 
@@ -166,17 +161,7 @@ public class Position {
      * @throws Exception
      */
     public Price getAllStockValue() throws Exception {
-        Price currentValue = PriceFactory.makeLimitPrice("0.00");
-        if (!holdings.isEmpty()) {
-            Iterator it = holdings.entrySet().iterator();
-            while (it.hasNext()) {
-                Map.Entry entry = (Map.Entry) it.next();
-                String product = (String) entry.getKey();
-                Price stockPrice = getStockPositionValue(product);
-                currentValue = currentValue.add(stockPrice);
-            }
-        }
-        return currentValue;
+        return allStockValue().toPrice();
     }
 
     /**
@@ -187,9 +172,89 @@ public class Position {
      * @throws Exception
      */
     public Price getNetAccountValue() throws Exception {
-        Price netValue = getAllStockValue();
-        netValue = netValue.add(accountCosts);
-        return netValue;
+        PriceAccumulator netValue = allStockValue();
+        netValue.addCents(accountCosts.getValue());
+        return netValue.toPrice();
+    }
+
+    /**
+     * Private method to return the current value of the stock with the given
+     * instrument id.
+     *
+     * @param id instrument id of stock
+     * @return Price of current value
+     * @throws Exception
+     */
+    private Price getStockPositionValue(int id) throws Exception {
+        return PriceFactory.makeLimitPrice(stockPositionCents(id));
+    }
+
+    /**
+     * Private method to return the current value in cents of the stock with
+     * the given instrument id, which is 0 if there is no holding or last sale.
+     *
+     * @param id instrument id of stock
+     * @return current value in cents
+     * @throws Exception
+     */
+    private long stockPositionCents(int id) throws Exception {
+        if (id < 0 || id >= holdings.length || holdings[id] == 0) {
+            return 0;
+        }
+        Price lastSale = (id < lastSales.length) ? lastSales[id] : null;
+        if (lastSale == null) {
+            return 0;
+        }
+        return PriceMath.multiply(lastSale.getValue(), holdings[id]);
+    }
+
+    /**
+     * Private method to add up the current value of all stocks this user owns.
+     *
+     * @return total current value of stocks
+     * @throws Exception
+     */
+    private PriceAccumulator allStockValue() throws Exception {
+        PriceAccumulator currentValue = new PriceAccumulator();
+        for (int id = 0; id < holdings.length; id++) {
+            if (holdings[id] != 0) {
+                currentValue.addCents(stockPositionCents(id));
+            }
+        }
+        return currentValue;
+    }
+
+    /**
+     * Private method to return the instrument id of a stock symbol a fill is
+     * recorded for, growing the holdings and last sales so the id fits. Only
+     * recording a fill needs the symbol to be a product; reading the position
+     * of any other symbol gives 0.
+     *
+     * @param product symbol
+     * @return instrument id of stock
+     * @throws InvalidValueException if the symbol is not a product
+     */
+    private int slot(String product) throws InvalidValueException {
+        int id = InstrumentDirectory.getInstance().getId(product);
+        if (id < 0) {
+            throw new InvalidValueException("InvalidValueException: Product " + product + " is not on the books given to client.Position#slot.");
+        }
+        fit(id);
+        return id;
+    }
+
+    /**
+     * Private method to grow the holdings and last sales so an instrument id
+     * fits.
+     *
+     * @param id instrument id of stock
+     */
+    private void fit(int id) {
+        if (id >= holdings.length) {
+            int length = Math.max(id + 1, holdings.length * 2);
+            holdings = Arrays.copyOf(holdings, length);
+            lastSales = Arrays.copyOf(lastSales, length);
+        }
     }
 }
 //end of file
\ No newline at end of file
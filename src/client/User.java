@@ -6,6 +6,7 @@ package client;
 import constants.BookSide;
 import java.util.ArrayList;
 import price.Price;
+import publishers.AmendMessage;
 import publishers.CancelMessage;
 import publishers.FillMessage;
 import tradable.TradableDTO;
@@ -39,6 +40,9 @@ public interface User {
     /**
      * Interface method to accept a fill message object which contains info on
      * an order or quote, like a receipt sent to user with details of a trade.
+     * The message is only valid while this method runs: the book sets the
+     * same object to its next fill once this returns, so an implementation
+     * must copy out anything it keeps and never store the message itself.
      *
      * @param fm fill message object
      */
@@ -51,6 +55,14 @@ public interface User {
      */
     void acceptMessage(CancelMessage cm);
 
+    /**
+     * Interface method to accept an amend message object, sent when one of
+     * the user's orders has been amended.
+     *
+     * @param am amend message object
+     */
+    void acceptMessage(AmendMessage am);
+
     /**
      * Interface method to accept a string which contains market information
      * related to a stock symbol.
@@ -87,6 +99,18 @@ public interface User {
      */
     void acceptCurrentMarket(String product, Price bp, int bv, Price sp, int sv);
 
+    /**
+     * Interface method to accept a string stock symbol, the price the book
+     * would open at if the market opened now, and the volume that would trade
+     * at that price. Sent while the market is in PREOPEN. A book that would
+     * not trade is sent as $0.00 with volume 0.
+     *
+     * @param product stock symbol
+     * @param p indicative opening price
+     * @param v indicative opening volume
+     */
+    void acceptIndicativeOpen(String product, Price p, int v);
+
     /**
      * Instructs a User object to connect to the trading system.
      *
@@ -184,6 +208,15 @@ public interface User {
      */
     void subscribeTicker(String product) throws Exception;
 
+    /**
+     * Allows the User object to subscribe for the Indicative Open price for
+     * the specified Stock.
+     *
+     * @param product symbol
+     * @throws Exception
+     */
+    void subscribeIndicativeOpen(String product) throws Exception;
+
     /**
      * Returns the value of the all Sock the User owns (has bought but not
      * sold).
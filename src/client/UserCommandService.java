@@ -8,14 +8,19 @@ import client.utils.AlreadyConnectedException;
 import client.utils.InvalidConnectionIdException;
 import client.utils.UserNotConnectedException;
 import constants.BookSide;
+import gateway.CommandGateway;
+import gateway.utils.GatewayNotRunningException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import price.Price;
 import publishers.CurrentMarketPublisher;
+import publishers.IndicativeOpenPublisher;
 import publishers.LastSalePublisher;
 import publishers.MessagePublisher;
 import publishers.TickerPublisher;
+import tradable.MassQuoteResultDTO;
 import tradable.Order;
 import tradable.Quote;
 import tradable.TradableDTO;
@@ -23,7 +28,9 @@ import tradable.TradableDTO;
 /**
  * This class acts as a facade between a user and the trading system.<br> It
  * implements the singleton design pattern and only one should ever be in
- * existence.
+ * existence. Order and quote commands go through the command gateway, and
+ * straight to the product service whenever the gateway turns them away
+ * because it is not running.
  *
  * @author Kevin Patrick Westropp
  * @version StockExVirtuoso.Version1.0
@@ -211,13 +218,59 @@ public class UserCommandService {
     public String submitOrder(String userName, long cId, String product, Price price, int volume, BookSide side) throws Exception {
         if (verifyUser(userName, cId)) {
             Order newOrder = new Order(userName, product, price, volume, side);
-            String orderId = ProductService.getInstance().submitOrder(newOrder);
+            String orderId;
+            try {
+                orderId = CommandGateway.getInstance().submitOrder(newOrder).get();
+            } catch (GatewayNotRunningException ex) {
+                orderId = ProductService.getInstance().submitOrder(newOrder);
+            }
             return orderId;
         } else {
             return ("Invalid Order.");
         }
     }
 
+    /**
+     * This method will create an order for each of the order details passed
+     * in and forward them to the product services submitOrders method as one
+     * batch. Only the product, price, original volume and side of each detail
+     * are used.
+     *
+     * @param userName
+     * @param cId connection id
+     * @param orders details of the orders
+     * @return list of order ids, in the same order as the details
+     * @throws Exception
+     */
+    public ArrayList<String> submitOrders(String userName, long cId, List<TradableDTO> orders) throws Exception {
+        if (verifyUser(userName, cId)) {
+            ArrayList<Order> newOrders = new ArrayList<>();
+            for (TradableDTO dto : orders) {
+                newOrders.add(new Order(userName, dto.product, dto.price, dto.originalVolume, dto.side));
+            }
+            return ProductService.getInstance().submitOrders(newOrders);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * This method will forward the provided information to the product service
+     * submitOrderCancels method as one batch.
+     *
+     * @param userName
+     * @param cId connection id
+     * @param product
+     * @param side
+     * @param orderIds
+     * @throws Exception
+     */
+    public void submitOrderCancels(String userName, long cId, String product, BookSide side, List<String> orderIds) throws Exception {
+        if (verifyUser(userName, cId)) {
+            ProductService.getInstance().submitOrderCancels(product, side, orderIds);
+        }
+    }
+
     /**
      * This method will forward the provided information to the product service
      * submitOrderCancel method.
@@ -231,7 +284,49 @@ public class UserCommandService {
      */
     public void submitOrderCancel(String userName, long cId, String product, BookSide side, String orderId) throws Exception {
         if (verifyUser(userName, cId)) {
-            ProductService.getInstance().submitOrderCancel(product, side, orderId);
+            try {
+                CommandGateway.getInstance().submitOrderCancel(product, side, orderId).get();
+            } catch (GatewayNotRunningException ex) {
+                ProductService.getInstance().submitOrderCancel(product, side, orderId);
+            }
+        }
+    }
+
+    /**
+     * This method will forward the provided information to the product service
+     * submitMassCancel method, cancelling everything the user has resting in
+     * the given products on the given side.
+     *
+     * @param userName
+     * @param cId connection id
+     * @param products symbols, or null for every product
+     * @param side of book, or null for both sides
+     * @return number of orders and quote sides cancelled
+     * @throws Exception
+     */
+    public int submitMassCancel(String userName, long cId, List<String> products, BookSide side) throws Exception {
+        if (verifyUser(userName, cId)) {
+            return ProductService.getInstance().submitMassCancel(userName, products, side);
+        }
+        return 0;
+    }
+
+    /**
+     * This method will forward the provided information to the product service
+     * submitOrderAmend method.
+     *
+     * @param userName
+     * @param cId connection id
+     * @param product
+     * @param side
+     * @param orderId
+     * @param price new price
+     * @param volume new remaining volume
+     * @throws Exception
+     */
+    public void submitOrderAmend(String userName, long cId, String product, BookSide side, String orderId, Price price, int volume) throws Exception {
+        if (verifyUser(userName, cId)) {
+            ProductService.getInstance().submitOrderAmend(product, side, orderId, price, volume);
         }
     }
 
@@ -251,7 +346,30 @@ public class UserCommandService {
     public void submitQuote(String userName, long cId, String product, Price bPrice, int bVolume, Price sPrice, int sVolume) throws Exception {
         if (verifyUser(userName, cId)) {
             Quote newQuote = new Quote(userName, product, bPrice, bVolume, sPrice, sVolume);
-            ProductService.getInstance().submitQuote(newQuote);
+            try {
+                CommandGateway.getInstance().submitQuote(newQuote).get();
+            } catch (GatewayNotRunningException ex) {
+                ProductService.getInstance().submitQuote(newQuote);
+            }
+        }
+    }
+
+    /**
+     * This method will forward a mass quote, one two-sided quote per product,
+     * to the product services submitMassQuote method and return its single
+     * acknowledgement with the outcome of every entry.
+     *
+     * @param userName
+     * @param cId connection id
+     * @param quotes one per product
+     * @return outcome of every entry
+     * @throws Exception
+     */
+    public MassQuoteResultDTO submitMassQuote(String userName, long cId, List<Quote> quotes) throws Exception {
+        if (verifyUser(userName, cId)) {
+            return ProductService.getInstance().submitMassQuote(userName, quotes);
+        } else {
+            return null;
         }
     }
 
@@ -266,7 +384,11 @@ public class UserCommandService {
      */
     public void submitQuoteCancel(String userName, long cId, String product) throws Exception {
         if (verifyUser(userName, cId)) {
-            ProductService.getInstance().submitQuoteCancel(userName, product);
+            try {
+                CommandGateway.getInstance().submitQuoteCancel(userName, product).get();
+            } catch (GatewayNotRunningException ex) {
+                ProductService.getInstance().submitQuoteCancel(userName, product);
+            }
         }
     }
 
@@ -353,6 +475,26 @@ public class UserCommandService {
         }
     }
 
+    /**
+     * This method will forward the subscription request to the indicative
+     * open publisher.
+     *
+     * @param userName
+     * @param cId connection id
+     * @param product
+     * @throws Exception
+     */
+    public void subscribeIndicativeOpen(String userName, long cId, String product) throws Exception {
+        if (verifyUser(userName, cId)) {
+            if (connectedUsers.get(userName) == null) {
+                throw new UserNotConnectedException("UserNotConnectedException: User name passed to UserCommandService.subscribeIndicativeOpen is not connected.");
+            } else {
+                User u = connectedUsers.get(userName);
+                IndicativeOpenPublisher.getInstance().subscribe(u, product);
+            }
+        }
+    }
+
     /**
      * This method will forward the un-subscribe request to the current market
      * publisher.
@@ -10,6 +10,7 @@ import gui.UserDisplayManager;
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import price.Price;
+import publishers.AmendMessage;
 import publishers.CancelMessage;
 import publishers.FillMessage;
 import tradable.TradableDTO;
@@ -100,7 +101,8 @@ public class UserImpl implements User {
 
     /**
      * This method will display the Fill Message in the market display and will
-     * forward the data to the Position object.
+     * forward the data to the Position object. Only the values of the message
+     * are passed on, since the message is reused for the next fill.
      *
      * @param fm fill message
      */
@@ -138,6 +140,25 @@ public class UserImpl implements User {
         }
     }
 
+    /**
+     * This method will display the amend message in the market display.
+     *
+     * @param am amend message
+     */
+    @Override
+    public void acceptMessage(AmendMessage am) {
+        try {
+            Timestamp time = new Timestamp(System.currentTimeMillis());
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("{%s} Amend Message: %s %s %s at %s", time.toString(), am.getSide(), am.getVolume(), am.getProduct(), am.getPrice().toString()));
+            sb.append(String.format(" %s [Tradable Id: %s]", am.getDetails(), am.getId()));
+            String amendSummary = sb.toString();
+            myManager.updateMarketActivity(amendSummary);
+        } catch (Exception ex) {
+            System.out.println("Caught error: " + ex.getMessage());
+        }
+    }
+
     /**
      * This method will display the market message in the market display.
      *
@@ -186,6 +207,25 @@ public class UserImpl implements User {
         }
     }
 
+    /**
+     * This method will display the indicative opening price in the market
+     * display.
+     *
+     * @param product symbol
+     * @param p indicative opening price
+     * @param v indicative opening volume
+     */
+    @Override
+    public void acceptIndicativeOpen(String product, Price p, int v) {
+        try {
+            Timestamp time = new Timestamp(System.currentTimeMillis());
+            String indicative = String.format("{%s} Indicative Open: %s %s at %s", time.toString(), v, product, p.toString());
+            myManager.updateMarketActivity(indicative);
+        } catch (Exception ex) {
+            System.out.println("Caught error: " + ex.getMessage());
+        }
+    }
+
     /**
      * This method will connect the user to the trading system.
      */
@@ -348,6 +388,19 @@ public class UserImpl implements User {
         }
     }
 
+    /**
+     * This method will subscribe to the indicative opening price.
+     *
+     * @param product
+     * @throws Exception
+     */
+    @Override
+    public void subscribeIndicativeOpen(String product) throws Exception {
+        if (ExceptionHandler.checkString(product, "client.UserImpl#subscribeIndicativeOpen.")) {
+            UserCommandService.getInstance().subscribeIndicativeOpen(user, connectionId, product);
+        }
+    }
+
     /**
      * This method will return a call to the user position getAllStockValue.
      *
@@ -0,0 +1,44 @@
+/**
+ * BookType.java
+ */
+package constants;
+
+/**
+ * This is an enumerated class which defines how a product book keeps its price
+ * levels.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public enum BookType {
+
+    /**
+     * Sorted list of levels, suits any price range.
+     */
+    SORTED("SORTED"),
+    /**
+     * Array of levels indexed by tick, for products that trade in a narrow
+     * band of prices.
+     */
+    TICK_ARRAY("TICK_ARRAY");
+    private final String booktype;  //name of book type
+
+    /**
+     * Construction method for enumeration of Book Type.
+     *
+     * @param type of book
+     */
+    private BookType(String type) {
+        booktype = type;
+    }
+
+    /**
+     * Get Method for value of BookType.
+     *
+     * @return String value of book type
+     */
+    public String getBookType() {
+        return booktype;
+    }
+}
+//end of file
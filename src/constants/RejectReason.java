@@ -0,0 +1,71 @@
+/**
+ * RejectReason.java
+ */
+package constants;
+
+/**
+ * This is an enumerated class which defines why one entry of a mass quote was
+ * rejected, or that it was accepted.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public enum RejectReason {
+
+    /**
+     * Entry was accepted.
+     */
+    ACCEPTED("Accepted"),
+    /**
+     * Market is CLOSED.
+     */
+    MARKET_CLOSED("Market is CLOSED"),
+    /**
+     * No product on the books.
+     */
+    NO_SUCH_PRODUCT("No product on the books"),
+    /**
+     * Another entry of the same mass quote is for the same product.
+     */
+    DUPLICATE_PRODUCT("Product is quoted more than once"),
+    /**
+     * Quote belongs to a different user than the sender.
+     */
+    WRONG_USER("Quote belongs to a different user"),
+    /**
+     * Sell price is less than or equal to buy price.
+     */
+    CROSSED_PRICES("Sell price is less than or equal to buy price"),
+    /**
+     * Price is less than or equal to zero.
+     */
+    INVALID_PRICE("Price is less than or equal to zero"),
+    /**
+     * Volume is less than or equal to zero.
+     */
+    INVALID_VOLUME("Volume is less than or equal to zero"),
+    /**
+     * Entry failed in the book for another reason.
+     */
+    REJECTED("Rejected by the book");
+    private final String description;  //text of reject reason
+
+    /**
+     * Construction method for enumeration of Reject Reason.
+     *
+     * @param text of reason
+     */
+    private RejectReason(String text) {
+        description = text;
+    }
+
+    /**
+     * Get Method for the text of the RejectReason.
+     *
+     * @return String text of reason
+     */
+    public String getDescription() {
+        return description;
+    }
+}
+//end of file
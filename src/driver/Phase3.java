@@ -288,6 +288,11 @@ public class Phase3 {
             System.out.println("User " + getUserName() + " Received Cancel Message: " + cm);
         }
 
+        @Override
+        public void acceptMessage(AmendMessage am) {
+            System.out.println("User " + getUserName() + " Received Amend Message: " + am);
+        }
+
         @Override
         public void acceptMarketMessage(String message) {
             System.out.println("User " + getUserName() + " Received Market Message: " + message);
@@ -303,6 +308,11 @@ public class Phase3 {
             System.out.println("User " + getUserName() + " Received Current Market for " + product + " " + bv + "@" + bp + " - " + sv + "@" + sp);
         }
 
+        @Override
+        public void acceptIndicativeOpen(String product, Price p, int v) {
+            System.out.println("User " + getUserName() + " Received Indicative Open for " + product + " " + v + "@" + p);
+        }
+
         @Override
         public void connect() throws Exception {
             throw new UnsupportedOperationException("Not supported yet.");
@@ -358,6 +368,11 @@ public class Phase3 {
             throw new UnsupportedOperationException("Not supported yet.");
         }
 
+        @Override
+        public void subscribeIndicativeOpen(String product) throws Exception {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
         @Override
         public Price getAllStockValue() throws Exception {
             throw new UnsupportedOperationException("Not supported yet.");
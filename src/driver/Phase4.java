@@ -9,6 +9,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import price.Price;
 import price.PriceFactory;
+import publishers.AmendMessage;
 import publishers.CancelMessage;
 import publishers.CurrentMarketPublisher;
 import publishers.FillMessage;
@@ -336,6 +337,11 @@ public class Phase4 {
             System.out.println("User " + getUserName() + " Received Cancel Message: " + cm);
         }
 
+        @Override
+        public void acceptMessage(AmendMessage am) {
+            System.out.println("User " + getUserName() + " Received Amend Message: " + am);
+        }
+
         @Override
         public void acceptMarketMessage(String message) {
             System.out.println("User " + getUserName() + " Received Market Message: " + message);
@@ -351,6 +357,11 @@ public class Phase4 {
             System.out.println("User " + getUserName() + " Received Current Market for " + product + " " + bv + "@" + bp + " - " + sv + "@" + sp);
         }
 
+        @Override
+        public void acceptIndicativeOpen(String product, Price p, int v) {
+            System.out.println("User " + getUserName() + " Received Indicative Open for " + product + " " + v + "@" + p);
+        }
+
         @Override
         public void connect() throws Exception {
             throw new UnsupportedOperationException("Not supported yet.");
@@ -406,6 +417,11 @@ public class Phase4 {
             throw new UnsupportedOperationException("Not supported yet.");
         }
 
+        @Override
+        public void subscribeIndicativeOpen(String product) throws Exception {
+            throw new UnsupportedOperationException("Not supported yet.");
+        }
+
         @Override
         public Price getAllStockValue() throws Exception {
             throw new UnsupportedOperationException("Not supported yet.");
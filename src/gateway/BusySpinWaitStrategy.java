@@ -0,0 +1,27 @@
+/*
+ * BusySpinWaitStrategy.java
+ */
+package gateway;
+
+/**
+ * This class implements a wait strategy that spins without ever giving up the
+ * processor.<br> It has the lowest latency but needs a core of its own for
+ * every waiting thread.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public class BusySpinWaitStrategy implements WaitStrategy {
+
+    /**
+     * This method will return straight away so the caller spins.
+     *
+     * @param counter number of idle calls so far
+     * @return updated counter
+     */
+    @Override
+    public int idle(int counter) {
+        return counter + 1;
+    }
+}
+//end of file
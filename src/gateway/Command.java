@@ -0,0 +1,84 @@
+/*
+ * Command.java
+ */
+package gateway;
+
+import constants.BookSide;
+import tradable.Order;
+import tradable.Quote;
+
+/**
+ * This class is one preallocated slot of the command ring buffer.<br> Slots
+ * are filled in by producers, run by the matching thread and then cleared and
+ * reused, so putting a command on the gateway does not allocate a slot.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+class Command {
+
+    /**
+     * This is an enumeration of the kinds of command the gateway runs.
+     */
+    enum Type {
+
+        /**
+         * Submit an order.
+         */
+        SUBMIT_ORDER,
+        /**
+         * Cancel a resting order.
+         */
+        CANCEL_ORDER,
+        /**
+         * Submit a quote.
+         */
+        SUBMIT_QUOTE,
+        /**
+         * Cancel a resting quote.
+         */
+        CANCEL_QUOTE
+    }
+    /**
+     * Kind of command in this slot.
+     */
+    Type type;
+    /**
+     * Order to submit.
+     */
+    Order order;
+    /**
+     * Quote to submit.
+     */
+    Quote quote;
+    /**
+     * Product symbol of a cancel.
+     */
+    String product;
+    /**
+     * Book side of an order cancel.
+     */
+    BookSide side;
+    /**
+     * Order id of an order cancel, or user name of a quote cancel.
+     */
+    String id;
+    /**
+     * Handle the result is sent back through.
+     */
+    CommandHandle handle;
+
+    /**
+     * This method will drop all references so the slot can be reused.
+     */
+    void clear() {
+        type = null;
+        order = null;
+        quote = null;
+        product = null;
+        side = null;
+        id = null;
+        handle = null;
+    }
+}
+//end of file
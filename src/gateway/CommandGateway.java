@@ -0,0 +1,326 @@
+/*
+ * CommandGateway.java
+ */
+package gateway;
+
+import book.ProductService;
+import constants.BookSide;
+import exceptions.ExceptionHandler;
+import gateway.utils.GatewayNotRunningException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import tradable.Order;
+import tradable.Quote;
+
+/**
+ * This class is the inbound command pipeline in front of the product
+ * service.<br> Order, quote and cancel commands from any number of threads
+ * are put on a lock-free ring buffer and run in batches by one matching
+ * thread, and results go back through completion handles. It is implemented
+ * as a thread-safe singleton and must be started before use.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public class CommandGateway {
+
+    /**
+     * Largest number of commands run in one batch.
+     */
+    private static final int MAX_BATCH = 256;
+    /**
+     * Single instance of the Command Gateway.
+     */
+    private static CommandGateway instance;
+    /**
+     * Ring buffer of the running gateway.
+     */
+    private volatile CommandRingBuffer buffer;
+    /**
+     * How the matching thread waits for commands.
+     */
+    private volatile WaitStrategy waitStrategy;
+    /**
+     * Matching thread of the running gateway.
+     */
+    private Thread matchingThread;
+    /**
+     * True while the gateway accepts commands.
+     */
+    private volatile boolean running;
+    /**
+     * Number of producers between checking the gateway is running and
+     * publishing their command.
+     */
+    private final AtomicInteger activeProducers = new AtomicInteger();
+    /**
+     * Number of commands run.
+     */
+    private final AtomicLong commandCount = new AtomicLong();
+    /**
+     * Number of batches run.
+     */
+    private final AtomicLong batchCount = new AtomicLong();
+    /**
+     * Total nanoseconds commands waited on the queue.
+     */
+    private final AtomicLong queueNanos = new AtomicLong();
+    /**
+     * Total nanoseconds spent running commands.
+     */
+    private final AtomicLong serviceNanos = new AtomicLong();
+
+    /**
+     * Private Constructor Method.
+     */
+    private CommandGateway() {
+    }
+
+    /**
+     * Public Get Instance Method which returns the single instance of the
+     * Command Gateway.
+     *
+     * @return Command Gateway
+     */
+    public synchronized static CommandGateway getInstance() {
+        if (instance == null) {
+            instance = new CommandGateway();
+        }
+        return instance;
+    }
+
+    /**
+     * This method will start the gateway with a ring buffer of at least the
+     * given size and a matching thread that waits using the given strategy.
+     * Producers waiting for room in a full buffer use the same strategy.
+     *
+     * @param capacity minimum number of ring buffer slots
+     * @param strategy how threads wait when idle
+     * @throws Exception
+     */
+    public synchronized void start(int capacity, WaitStrategy strategy) throws Exception {
+        ExceptionHandler.checkIntNegative(capacity, "gateway.CommandGateway#start.");
+        ExceptionHandler.checkIntZero(capacity, "gateway.CommandGateway#start.");
+        ExceptionHandler.checkObject(strategy, "gateway.CommandGateway#start.");
+        stop();
+        buffer = new CommandRingBuffer(capacity, strategy);
+        waitStrategy = strategy;
+        running = true;
+        matchingThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "command-gateway");
+        matchingThread.setDaemon(true);
+        matchingThread.start();
+    }
+
+    /**
+     * This method will stop accepting commands and wait for the matching
+     * thread to run every command already on the queue.
+     *
+     * @throws InterruptedException
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (matchingThread != null) {
+            running = false;
+            matchingThread.join();
+            matchingThread = null;
+            buffer = null;
+        }
+    }
+
+    /**
+     * Returns true while the gateway accepts commands.
+     *
+     * @return true if running
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * This method will queue an order to be submitted to the product service.
+     * The handle's result is the order id.
+     *
+     * @param o order
+     * @return completion handle
+     * @throws Exception
+     */
+    public CommandHandle submitOrder(Order o) throws Exception {
+        ExceptionHandler.checkObject(o, "gateway.CommandGateway#submitOrder.");
+        return enqueue(Command.Type.SUBMIT_ORDER, o, null, null, null, null);
+    }
+
+    /**
+     * This method will queue an order cancel for the product service.
+     *
+     * @param product symbol
+     * @param side of book
+     * @param orderId system ID
+     * @return completion handle
+     * @throws Exception
+     */
+    public CommandHandle submitOrderCancel(String product, BookSide side, String orderId) throws Exception {
+        return enqueue(Command.Type.CANCEL_ORDER, null, null, product, side, orderId);
+    }
+
+    /**
+     * This method will queue a quote to be submitted to the product service.
+     *
+     * @param q quote
+     * @return completion handle
+     * @throws Exception
+     */
+    public CommandHandle submitQuote(Quote q) throws Exception {
+        ExceptionHandler.checkObject(q, "gateway.CommandGateway#submitQuote.");
+        return enqueue(Command.Type.SUBMIT_QUOTE, null, q, null, null, null);
+    }
+
+    /**
+     * This method will queue a quote cancel for the product service.
+     *
+     * @param userName of user
+     * @param product symbol
+     * @return completion handle
+     * @throws Exception
+     */
+    public CommandHandle submitQuoteCancel(String userName, String product) throws Exception {
+        return enqueue(Command.Type.CANCEL_QUOTE, null, null, product, null, userName);
+    }
+
+    /**
+     * Returns the number of commands run since the gateway was first started.
+     *
+     * @return number of commands
+     */
+    public long getCommandCount() {
+        return commandCount.get();
+    }
+
+    /**
+     * Returns the number of batches run since the gateway was first started.
+     *
+     * @return number of batches
+     */
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Returns the total nanoseconds commands have waited on the queue.
+     *
+     * @return total queueing delay
+     */
+    public long getTotalQueueNanos() {
+        return queueNanos.get();
+    }
+
+    /**
+     * Returns the total nanoseconds spent running commands.
+     *
+     * @return total matching time
+     */
+    public long getTotalServiceNanos() {
+        return serviceNanos.get();
+    }
+
+    /**
+     * Private method to claim a slot, fill it in and publish it.
+     *
+     * @return completion handle
+     * @throws GatewayNotRunningException
+     */
+    private CommandHandle enqueue(Command.Type type, Order o, Quote q, String product, BookSide side, String id) throws GatewayNotRunningException {
+        activeProducers.incrementAndGet();
+        try {
+            CommandRingBuffer current = buffer;
+            if (!running || current == null) {
+                throw new GatewayNotRunningException("GatewayNotRunningException: The command gateway is not running.");
+            }
+            long sequence = current.claim();
+            Command c = current.get(sequence);
+            CommandHandle handle = new CommandHandle();
+            c.type = type;
+            c.order = o;
+            c.quote = q;
+            c.product = product;
+            c.side = side;
+            c.id = id;
+            c.handle = handle;
+            current.publish(sequence);
+            return handle;
+        } finally {
+            activeProducers.decrementAndGet();
+        }
+    }
+
+    /**
+     * Private method run by the matching thread. It runs every published
+     * command in batches until the gateway is stopped and no producer can
+     * still publish.
+     */
+    private void drain() {
+        CommandRingBuffer current = buffer;
+        WaitStrategy strategy = waitStrategy;
+        long next = 0;
+        int idle = 0;
+        while (true) {
+            long last = current.highestPublished(next, MAX_BATCH);
+            if (last < next) {
+                if (!running && activeProducers.get() == 0 && current.getClaimed() < next) {
+                    return;
+                }
+                idle = strategy.idle(idle);
+                continue;
+            }
+            idle = 0;
+            for (long sequence = next; sequence <= last; sequence++) {
+                Command c = current.get(sequence);
+                run(c);
+                c.clear();
+            }
+            current.release(last);
+            commandCount.addAndGet(last - next + 1);
+            batchCount.incrementAndGet();
+            next = last + 1;
+        }
+    }
+
+    /**
+     * Private method to run one command against the product service and
+     * complete its handle.
+     *
+     * @param c command
+     */
+    private void run(Command c) {
+        CommandHandle handle = c.handle;
+        queueNanos.addAndGet(handle.started(System.nanoTime()));
+        String result = null;
+        Exception error = null;
+        try {
+            ProductService ps = ProductService.getInstance();
+            switch (c.type) {
+                case SUBMIT_ORDER:
+                    result = ps.submitOrder(c.order);
+                    break;
+                case CANCEL_ORDER:
+                    ps.submitOrderCancel(c.product, c.side, c.id);
+                    break;
+                case SUBMIT_QUOTE:
+                    ps.submitQuote(c.quote);
+                    break;
+                case CANCEL_QUOTE:
+                    ps.submitQuoteCancel(c.id, c.product);
+                    break;
+                default:
+                    break;
+            }
+        } catch (Exception e) {
+            error = e;
+        }
+        serviceNanos.addAndGet(handle.complete(result, error));
+    }
+}
+//end of file
@@ -0,0 +1,152 @@
+/*
+ * CommandHandle.java
+ */
+package gateway;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is the completion handle of one command put on the command
+ * gateway.<br> The matching thread completes it with the result or the
+ * exception of the command, and records when the command was taken off the
+ * queue so queueing delay can be told apart from matching time.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public final class CommandHandle {
+
+    /**
+     * Number of checks to spin for before parking in get.
+     */
+    private static final int SPIN_TRIES = 1000;
+    /**
+     * Time the command was put on the queue.
+     */
+    private final long enqueuedNanos;
+    /**
+     * Time the matching thread started the command.
+     */
+    private long startedNanos;
+    /**
+     * Time the matching thread finished the command.
+     */
+    private long finishedNanos;
+    /**
+     * Result of the command, the order id for an order.
+     */
+    private String result;
+    /**
+     * Exception thrown by the command, if any.
+     */
+    private Exception error;
+    /**
+     * True once the command has run.
+     */
+    private volatile boolean done;
+    /**
+     * Thread waiting in get, if any.
+     */
+    private volatile Thread waiter;
+
+    /**
+     * Package-visible construction method for a command queued now.
+     */
+    CommandHandle() {
+        enqueuedNanos = System.nanoTime();
+    }
+
+    /**
+     * Returns true once the command has run.
+     *
+     * @return true if done
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * This method will wait for the command to run and return its result, or
+     * throw the exception the command threw.
+     *
+     * @return result of command
+     * @throws Exception thrown by the command
+     */
+    public String get() throws Exception {
+        if (!done) {
+            waiter = Thread.currentThread();
+            int spins = 0;
+            while (!done) {
+                if (spins < SPIN_TRIES) {
+                    spins++;
+                } else {
+                    LockSupport.park(this);
+                }
+            }
+            waiter = null;
+        }
+        if (error != null) {
+            throw error;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the nanoseconds the command waited on the queue, or -1 if it has
+     * not run yet.
+     *
+     * @return queueing delay
+     */
+    public long getQueueNanos() {
+        if (!done) {
+            return -1;
+        }
+        return startedNanos - enqueuedNanos;
+    }
+
+    /**
+     * Returns the nanoseconds the command took to run, or -1 if it has not run
+     * yet.
+     *
+     * @return matching time
+     */
+    public long getServiceNanos() {
+        if (!done) {
+            return -1;
+        }
+        return finishedNanos - startedNanos;
+    }
+
+    /**
+     * Package visible method to record that the matching thread started the
+     * command.
+     *
+     * @param now current time
+     * @return queueing delay
+     */
+    long started(long now) {
+        startedNanos = now;
+        return startedNanos - enqueuedNanos;
+    }
+
+    /**
+     * Package visible method to complete the handle and wake the waiting
+     * thread.
+     *
+     * @param value result of command
+     * @param e exception of command, or null
+     * @return matching time
+     */
+    long complete(String value, Exception e) {
+        finishedNanos = System.nanoTime();
+        result = value;
+        error = e;
+        done = true;
+        Thread t = waiter;
+        if (t != null) {
+            LockSupport.unpark(t);
+        }
+        return finishedNanos - startedNanos;
+    }
+}
+//end of file
@@ -0,0 +1,148 @@
+/*
+ * CommandRingBuffer.java
+ */
+package gateway;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a preallocated, lock-free ring buffer of commands with many
+ * producers and one consumer.<br> Producers claim a sequence number with a
+ * compare and set, fill in the slot and publish it. The consumer drains every
+ * contiguous published slot as one batch and then releases them for reuse.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+class CommandRingBuffer {
+
+    /**
+     * Preallocated command slots.
+     */
+    private final Command[] slots;
+    /**
+     * Mask from sequence number to slot index.
+     */
+    private final int mask;
+    /**
+     * Sequence number last published in each slot.
+     */
+    private final AtomicLongArray published;
+    /**
+     * Highest sequence number claimed by a producer.
+     */
+    private final AtomicLong claimed = new AtomicLong(-1);
+    /**
+     * Highest sequence number the consumer is done with.
+     */
+    private final AtomicLong consumed = new AtomicLong(-1);
+    /**
+     * How producers wait when the buffer is full.
+     */
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * Package-visible construction method for a buffer of at least the given
+     * size, rounded up to a power of two.
+     *
+     * @param capacity minimum number of slots
+     * @param waitStrategy how producers wait when the buffer is full
+     */
+    CommandRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        slots = new Command[size];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Command();
+            published.set(i, -1);
+        }
+        mask = size - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    /**
+     * Returns the number of slots.
+     *
+     * @return number of slots
+     */
+    int capacity() {
+        return slots.length;
+    }
+
+    /**
+     * This method will claim the next sequence number, waiting while the
+     * buffer is full.
+     *
+     * @return sequence number claimed
+     */
+    long claim() {
+        int idle = 0;
+        while (true) {
+            long current = claimed.get();
+            long next = current + 1;
+            if (next - slots.length > consumed.get()) {
+                idle = waitStrategy.idle(idle);
+            } else if (claimed.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * Returns the slot for a sequence number.
+     *
+     * @param sequence number
+     * @return command slot
+     */
+    Command get(long sequence) {
+        return slots[(int) (sequence & mask)];
+    }
+
+    /**
+     * This method will make a filled in slot visible to the consumer.
+     *
+     * @param sequence number
+     */
+    void publish(long sequence) {
+        published.lazySet((int) (sequence & mask), sequence);
+    }
+
+    /**
+     * Returns the highest sequence number from the given one on that has been
+     * published with no gaps, limited to a batch size, or one less than the
+     * given number if it has not been published yet.
+     *
+     * @param from first sequence number wanted
+     * @param maxBatch largest number of slots to return
+     * @return last sequence number of the batch
+     */
+    long highestPublished(long from, int maxBatch) {
+        long limit = from + maxBatch;
+        long sequence = from;
+        while (sequence < limit && published.get((int) (sequence & mask)) == sequence) {
+            sequence++;
+        }
+        return sequence - 1;
+    }
+
+    /**
+     * This method will hand every slot up to the sequence number back to the
+     * producers.
+     *
+     * @param sequence last sequence number consumed
+     */
+    void release(long sequence) {
+        consumed.lazySet(sequence);
+    }
+
+    /**
+     * Returns the highest sequence number claimed by a producer.
+     *
+     * @return claimed sequence number
+     */
+    long getClaimed() {
+        return claimed.get();
+    }
+}
+//end of file
@@ -0,0 +1,63 @@
+/*
+ * ParkingWaitStrategy.java
+ */
+package gateway;
+
+import exceptions.ExceptionHandler;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class implements a wait strategy that spins, then yields, and then
+ * parks the thread for a short time on every call.<br> It uses the least CPU
+ * when the gateway is quiet at the cost of wake up latency.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+
+    /**
+     * Number of idle calls to spin for before yielding.
+     */
+    private static final int SPIN_TRIES = 100;
+    /**
+     * Number of idle calls to yield for before parking.
+     */
+    private static final int YIELD_TRIES = 200;
+    /**
+     * Nanoseconds to park for on each call.
+     */
+    private final long parkNanos;
+
+    /**
+     * Public construction method for a strategy that parks for the given
+     * time.
+     *
+     * @param parkNanos nanoseconds to park for
+     * @throws Exception
+     */
+    public ParkingWaitStrategy(long parkNanos) throws Exception {
+        ExceptionHandler.checkLongNegative(parkNanos, "gateway.ParkingWaitStrategy#constructor.");
+        ExceptionHandler.checkLongZero(parkNanos, "gateway.ParkingWaitStrategy#constructor.");
+        this.parkNanos = parkNanos;
+    }
+
+    /**
+     * This method will spin, then yield, then park the thread.
+     *
+     * @param counter number of idle calls so far
+     * @return updated counter
+     */
+    @Override
+    public int idle(int counter) {
+        if (counter < SPIN_TRIES) {
+            return counter + 1;
+        } else if (counter < YIELD_TRIES) {
+            Thread.yield();
+            return counter + 1;
+        }
+        LockSupport.parkNanos(this, parkNanos);
+        return counter;
+    }
+}
+//end of file
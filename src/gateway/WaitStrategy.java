@@ -0,0 +1,25 @@
+/*
+ * WaitStrategy.java
+ */
+package gateway;
+
+/**
+ * This is a public interface which governs how a thread of the command gateway
+ * waits when it has nothing to do, either the matching thread waiting for
+ * commands or a producer waiting for room in the ring buffer.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public interface WaitStrategy {
+
+    /**
+     * This method will be called each time the thread finds nothing to do. The
+     * counter starts at 0 and is reset whenever work is found.
+     *
+     * @param counter number of idle calls so far
+     * @return updated counter
+     */
+    public int idle(int counter);
+}
+//end of file
@@ -0,0 +1,35 @@
+/*
+ * YieldingWaitStrategy.java
+ */
+package gateway;
+
+/**
+ * This class implements a wait strategy that spins for a while and then
+ * yields the processor to other threads on every call.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public class YieldingWaitStrategy implements WaitStrategy {
+
+    /**
+     * Number of idle calls to spin for before yielding.
+     */
+    private static final int SPIN_TRIES = 100;
+
+    /**
+     * This method will spin for the first calls and yield after that.
+     *
+     * @param counter number of idle calls so far
+     * @return updated counter
+     */
+    @Override
+    public int idle(int counter) {
+        if (counter < SPIN_TRIES) {
+            return counter + 1;
+        }
+        Thread.yield();
+        return counter;
+    }
+}
+//end of file
@@ -0,0 +1,24 @@
+/**
+ * GatewayNotRunningException.java
+ */
+package gateway.utils;
+
+/**
+ * This is an exception that is used when a command is sent to the command
+ * gateway while it is not running.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public class GatewayNotRunningException extends Exception {
+
+    /**
+     * Gateway Not Running Exception.
+     *
+     * @param msg
+     */
+    public GatewayNotRunningException(String msg) {
+        super(msg);
+    }
+}
+//end of file
@@ -3,6 +3,7 @@
  */
 package price;
 
+import java.nio.ByteBuffer;
 import price.utils.InvalidPriceOperation;
 
 /**
@@ -22,6 +23,10 @@ public final class Price implements Comparable<Price> {
      * Boolean Market Price: Yes or No?.
      */
     private final boolean MKT;
+    /**
+     * Rendered form of price, made the first time it is asked for.
+     */
+    private String text;
 
     /**
      * Package-visible Construction Method for a new Limit Price object.
@@ -45,11 +50,12 @@ public final class Price implements Comparable<Price> {
     }
 
     /**
-     * Private Get method to return value of current object.
+     * Public Get method to return value of current object in cents, which is
+     * 0 for a market price.
      *
      * @return currentValue
      */
-    private long getValue() {
+    public long getValue() {
         return VALUE;
     }
 
@@ -68,6 +74,7 @@ public final class Price implements Comparable<Price> {
      * @param p Price object
      * @return Price object
      * @throws InvalidPriceOperation if either of the objects are a Market Price
+     * or the result overflows
      */
     public Price add(Price p) throws InvalidPriceOperation {
         if (isMarket() == true || p.isMarket() == true) {
@@ -75,7 +82,7 @@ public final class Price implements Comparable<Price> {
         } else {
             long currentValue = getValue();
             long addValue = p.VALUE;
-            long newValue = (currentValue + addValue);
+            long newValue = PriceMath.add(currentValue, addValue);
             Price newPrice = PriceFactory.makeLimitPrice(newValue);
             return newPrice;
         }
@@ -87,6 +94,7 @@ public final class Price implements Comparable<Price> {
      * @param p Price object
      * @return Price object
      * @throws InvalidPriceOperation if either of the objects are a Market Price
+     * or the result overflows
      */
     public Price subtract(Price p) throws InvalidPriceOperation {
         if (isMarket() == true || p.isMarket() == true) {
@@ -94,7 +102,7 @@ public final class Price implements Comparable<Price> {
         } else {
             long currentValue = getValue();
             long subValue = p.VALUE;
-            long newValue = (currentValue - subValue);
+            long newValue = PriceMath.subtract(currentValue, subValue);
             Price newPrice = PriceFactory.makeLimitPrice(newValue);
             return newPrice;
         }
@@ -107,7 +115,7 @@ public final class Price implements Comparable<Price> {
      * @param p Price object
      * @return Price object
      * @throws InvalidPriceOperation if the current price is a market Price or
-     * multiply value less than or equal to 0
+     * multiply value less than or equal to 0, or the result overflows
      * @see #getValue()
      */
     public Price multiply(int p) throws InvalidPriceOperation {
@@ -115,7 +123,7 @@ public final class Price implements Comparable<Price> {
             throw new InvalidPriceOperation("InvalidPriceOperation: Cannot multiply a MARKET price");
         } else {
             long currentValue = getValue();
-            long newValue = (currentValue * p);
+            long newValue = PriceMath.multiply(currentValue, p);
             Price newPrice = PriceFactory.makeLimitPrice(newValue);
             return newPrice;
         }
@@ -267,24 +275,107 @@ public final class Price implements Comparable<Price> {
     }
 
     /**
-     * Public To String method which returns the price value in Dollars.
+     * Public To String method which returns the price value in Dollars, such
+     * as "$1,234.50" or "$-0.25", or "MKT" for a market price. The String is
+     * made once and kept, so asking again costs nothing.
      *
      * @return String of price object
-     * @see #getMarketPrice()
-     * @see #getValue()
+     * @see #appendTo(java.lang.StringBuilder)
      */
     @Override
     public String toString() {
-        // returns MKT if market price
-        String market = ("MKT");
-        if (getMarketPrice() == true) {
-            return market;
-        } else // returns string of value
-        {
-            long priceValue = getValue();
-            double d = (double) priceValue / 100.0;
-            return String.format("$%,.2f", d);
+        String s = text;
+        if (s == null) {
+            s = getMarketPrice() ? "MKT" : appendTo(new StringBuilder(16)).toString();
+            text = s;
+        }
+        return s;
+    }
+
+    /**
+     * Public method which appends the price in Dollars, exactly as toString
+     * returns it, to a StringBuilder without making any other objects.
+     *
+     * @param sb StringBuilder to append to
+     * @return sb
+     */
+    public StringBuilder appendTo(StringBuilder sb) {
+        render(sb, null);
+        return sb;
+    }
+
+    /**
+     * Public method which writes the price in Dollars, exactly as toString
+     * returns it, into a ByteBuffer as one byte per character, without making
+     * any other objects.
+     *
+     * @param buf ByteBuffer to write to
+     * @return buf
+     * @throws java.nio.BufferOverflowException if buf has too little room
+     */
+    public ByteBuffer appendTo(ByteBuffer buf) {
+        render(null, buf);
+        return buf;
+    }
+
+    /**
+     * Private method which writes the price in Dollars with integer math,
+     * grouping the dollars in threes with ',' and always showing two digits of
+     * cents, to whichever of the StringBuilder and ByteBuffer is not null.
+     *
+     * @param sb StringBuilder, or null
+     * @param buf ByteBuffer, or null
+     */
+    private void render(StringBuilder sb, ByteBuffer buf) {
+        if (getMarketPrice()) {
+            put(sb, buf, 'M');
+            put(sb, buf, 'K');
+            put(sb, buf, 'T');
+            return;
+        }
+        // work on the magnitude as a value <= 0, which unlike a positive one
+        // exists for every long, Long.MIN_VALUE included
+        long dollars = VALUE / 100;
+        int cents = (int) (VALUE % 100);
+        put(sb, buf, '$');
+        if (VALUE < 0) {
+            put(sb, buf, '-');
+        } else {
+            dollars = -dollars;
+            cents = -cents;
+        }
+        long scale = 1;
+        int digits = 1;
+        while (dollars / scale <= -10) {
+            scale *= 10;
+            digits++;
+        }
+        for (; scale > 0; scale /= 10) {
+            put(sb, buf, (char) ('0' - (dollars / scale) % 10));
+            digits--;
+            if (digits > 0 && digits % 3 == 0) {
+                put(sb, buf, ',');
+            }
+        }
+        put(sb, buf, '.');
+        put(sb, buf, (char) ('0' - cents / 10));
+        put(sb, buf, (char) ('0' - cents % 10));
+    }
+
+    /**
+     * Private method which writes one character to whichever of the
+     * StringBuilder and ByteBuffer is not null.
+     *
+     * @param sb StringBuilder, or null
+     * @param buf ByteBuffer, or null
+     * @param c character
+     */
+    private static void put(StringBuilder sb, ByteBuffer buf, char c) {
+        if (sb != null) {
+            sb.append(c);
+        } else {
+            buf.put((byte) c);
         }
     }
 }
-//end of file
\ No newline at end of file
+//end of file
@@ -0,0 +1,158 @@
+/**
+ * PriceAccumulator.java
+ */
+package price;
+
+import price.utils.InvalidPriceOperation;
+
+/**
+ * This class is a running total of prices, such as the notional value of
+ * fills or holdings, kept in cents in a primitive long.<br> Adding to it makes
+ * no Price objects and does not touch the PriceFactory cache; a Price is only
+ * made when the total is asked for as one. Market prices cannot be added, and
+ * a total that would not fit in a long is reported with an
+ * InvalidPriceOperation and leaves the total as it was. An accumulator is not
+ * safe for use by more than one thread at a time.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public final class PriceAccumulator {
+
+    /**
+     * Total in cents.
+     */
+    private long total;
+
+    /**
+     * Public Construction Method to create a new accumulator at $0.00.
+     */
+    public PriceAccumulator() {
+    }
+
+    /**
+     * Public Construction Method to create a new accumulator starting at the
+     * given value.
+     *
+     * @param cents starting total in cents
+     */
+    public PriceAccumulator(long cents) {
+        total = cents;
+    }
+
+    /**
+     * This method will add a price to the total.
+     *
+     * @param p price to add
+     * @return this accumulator
+     * @throws InvalidPriceOperation if p is a market price or the total
+     * overflows
+     */
+    public PriceAccumulator add(Price p) throws InvalidPriceOperation {
+        total = PriceMath.add(total, limitValue(p));
+        return this;
+    }
+
+    /**
+     * This method will subtract a price from the total.
+     *
+     * @param p price to subtract
+     * @return this accumulator
+     * @throws InvalidPriceOperation if p is a market price or the total
+     * overflows
+     */
+    public PriceAccumulator subtract(Price p) throws InvalidPriceOperation {
+        total = PriceMath.subtract(total, limitValue(p));
+        return this;
+    }
+
+    /**
+     * This method will add a price times a volume to the total.
+     *
+     * @param p price
+     * @param volume to multiply the price by
+     * @return this accumulator
+     * @throws InvalidPriceOperation if p is a market price or the total
+     * overflows
+     */
+    public PriceAccumulator addProduct(Price p, int volume) throws InvalidPriceOperation {
+        total = PriceMath.add(total, PriceMath.multiply(limitValue(p), volume));
+        return this;
+    }
+
+    /**
+     * This method will subtract a price times a volume from the total.
+     *
+     * @param p price
+     * @param volume to multiply the price by
+     * @return this accumulator
+     * @throws InvalidPriceOperation if p is a market price or the total
+     * overflows
+     */
+    public PriceAccumulator subtractProduct(Price p, int volume) throws InvalidPriceOperation {
+        total = PriceMath.subtract(total, PriceMath.multiply(limitValue(p), volume));
+        return this;
+    }
+
+    /**
+     * This method will add a value in cents to the total.
+     *
+     * @param cents value to add
+     * @return this accumulator
+     * @throws InvalidPriceOperation if the total overflows
+     */
+    public PriceAccumulator addCents(long cents) throws InvalidPriceOperation {
+        total = PriceMath.add(total, cents);
+        return this;
+    }
+
+    /**
+     * This method will set the total back to $0.00.
+     */
+    public void reset() {
+        total = 0;
+    }
+
+    /**
+     * Returns the total in cents.
+     *
+     * @return total in cents
+     */
+    public long getValue() {
+        return total;
+    }
+
+    /**
+     * Returns the total as a limit Price.
+     *
+     * @return total
+     */
+    public Price toPrice() {
+        return PriceFactory.makeLimitPrice(total);
+    }
+
+    /**
+     * Returns the total in dollars, as a Price would show it.
+     *
+     * @return String of total
+     */
+    @Override
+    public String toString() {
+        return toPrice().toString();
+    }
+
+    /**
+     * Private method to return the value in cents of a limit price.
+     *
+     * @param p price
+     * @return value in cents
+     * @throws InvalidPriceOperation if p is a market price
+     */
+    private static long limitValue(Price p) throws InvalidPriceOperation {
+        if (p.isMarket()) {
+            throw new InvalidPriceOperation("InvalidPriceOperation: Cannot add a MARKET price to a total");
+        }
+        return p.getValue();
+    }
+}
+//end of file
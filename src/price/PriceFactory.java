@@ -3,12 +3,25 @@
  */
 package price;
 
-import exceptions.ExceptionHandler;
-import java.util.HashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * This class creates Price objects for the DePaul Stock Exchange Project.<br>
- * This class implements a simple factory/flyweight design pattern.
+ * This class implements a simple factory/flyweight design pattern. Limit prices
+ * are cached by their exact value in cents in two tiers. Prices near the
+ * reference prices the market is trading at, such as the last sale of each
+ * product, are kept for good in blocks of BLOCK_SIZE cents, one block each
+ * side of the block a reference price falls in. A block is only added when a
+ * reference price first falls near it, and each Price in it is only made the
+ * first time it is asked for. There is always a block from $0.00 to $10.23. Any
+ * other price, such as a notional total or running account cost, goes to a
+ * fixed size table where it may push out an older price that hashes to the
+ * same slot, so one-off values do not pile up. A price pushed out is simply
+ * made again when next asked for, so prices must be compared by value and not
+ * by identity. The market price is a single instance of its own. Cache hits
+ * and misses are only counted while statistics are turned on, so by default
+ * finding a price writes nothing shared. Every method may be called from any
+ * thread.
  *
  * @author Kevin Patrick Westropp
  * @version StockExVirtuoso.Version.1.0
@@ -16,9 +29,51 @@ import java.util.HashMap;
 public class PriceFactory {
 
     /**
-     * HashMap which contains all prices values made so far.
+     * Number of bits of the number of cents in a block.
      */
-    private static HashMap<Integer, Price> prices = new HashMap<>();
+    private static final int BLOCK_BITS = 10;
+    /**
+     * Number of cents in a block.
+     */
+    private static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    /**
+     * Most blocks kept; reference prices that would need more are ignored.
+     */
+    private static final int MAX_BLOCKS = 256;
+    /**
+     * Number of bits of a slot of the table of prices outside the blocks.
+     */
+    private static final int OVERFLOW_BITS = 14;
+    /**
+     * Blocks of limit prices, in order of their first value. Replaced with a
+     * larger copy when a block is added.
+     */
+    private static volatile PriceBlock[] blocks = {new PriceBlock(0)};
+    /**
+     * Recently made limit prices outside the blocks, in the slot their value
+     * hashes to.
+     */
+    private static final AtomicReferenceArray<Price> overflowPrices = new AtomicReferenceArray<>(1 << OVERFLOW_BITS);
+    /**
+     * True while cache hits, misses and evictions are counted.
+     */
+    private static volatile boolean statistics;
+    /**
+     * Number of limit prices found in the cache.
+     */
+    private static final StripedCounter hits = new StripedCounter();
+    /**
+     * Number of limit prices that had to be made.
+     */
+    private static final StripedCounter misses = new StripedCounter();
+    /**
+     * Number of limit prices pushed out of the table.
+     */
+    private static final StripedCounter evictions = new StripedCounter();
+    /**
+     * The one market price.
+     */
+    private static final Price marketPrice = new Price();
 
     /**
      * Public Factory method takes an incoming String value and converts it to a
@@ -29,142 +84,226 @@ public class PriceFactory {
      * @return Limit Price object
      * @throws Exception
      * @see #makeLimitPrice(long)
+     * @see price.PriceParser
      */
     public static Price makeLimitPrice(String value) throws Exception {
-        long numValue = 0;
-        String newValue, dollars, cents;
-        String[] splitValue;
-        boolean isNegative = false;
-
-        //string algorithm for transfer to long value
-        if (value.contains("$")) {
-            newValue = value.replace("$", "");
-            value = newValue;
-        }
+        return makeLimitPrice(PriceParser.parse(value));
+    }
 
-        if (value.contains(",")) {
-            newValue = value.replace(",", "");
-            value = newValue;
-        }
+    /**
+     * Public Factory method takes an incoming character sequence, such as a
+     * StringBuilder, and converts it to a long value without making a String,
+     * then passes it to the makeLimitPrice(long value) to return a new Price
+     * object.
+     *
+     * @param value of new price object
+     * @return Limit Price object
+     * @throws Exception
+     * @see #makeLimitPrice(long)
+     */
+    public static Price makeLimitPrice(CharSequence value) throws Exception {
+        return makeLimitPrice(PriceParser.parse(value));
+    }
 
-        if (value.contains("-")) {
-            isNegative = true;
-            newValue = value.replace("-", "");
-            value = newValue;
-        }
+    /**
+     * Public Factory method takes a range of single byte characters, such as
+     * a field of a wire message, and converts it to a long value then passes
+     * it to the makeLimitPrice(long value) to return a new Price object.
+     *
+     * @param bytes holding the value of new price object
+     * @param offset of first byte
+     * @param length number of bytes
+     * @return Limit Price object
+     * @throws Exception
+     * @see #makeLimitPrice(long)
+     */
+    public static Price makeLimitPrice(byte[] bytes, int offset, int length) throws Exception {
+        return makeLimitPrice(PriceParser.parse(bytes, offset, length));
+    }
 
-        if (value.contains(".")) {
-            if (value.startsWith(".")) {
-                newValue = value.replace(".", "");
-                value = newValue.substring(0, 2);
-                if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
-                    numValue = Long.valueOf(value);
-                }
-            } else if (value.endsWith(".")) {
-                newValue = value.replace(".", "");
-                value = newValue.concat("00");
-                if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
-                    numValue = Long.valueOf(value);
+    /**
+     * This method checks if a Price of the value is in the cache, if so it
+     * returns with that Price object, if not it returns with a new Price
+     * object based off its value and caches it.
+     *
+     * @param value long
+     * @return Price object
+     * @see price.Price#Price(long)
+     */
+    public static Price makeLimitPrice(long value) {
+        PriceBlock block = findBlock(blocks, value >> BLOCK_BITS);
+        if (block != null) {
+            int index = (int) (value & (BLOCK_SIZE - 1));
+            Price cached = block.prices.get(index);
+            if (cached == null) {
+                count(misses);
+                Price limitPrice = new Price(value);
+                if (block.prices.compareAndSet(index, null, limitPrice)) {
+                    return limitPrice;
                 }
-            } else {
-                splitValue = value.split("\\.");
-                dollars = splitValue[0];
-                cents = splitValue[1];
-                if (dollars.isEmpty() && cents.isEmpty()) {
-                    throw new Exception("THIS IS A SERIOUS ERROR!");
-                } else if (Long.valueOf(dollars) != 0) {
-                    if (ExceptionHandler.checkPriceInput(dollars, "Price.PriceFactory#makeLimitPrice.")) {
-                        numValue = Long.valueOf(dollars);
-                        numValue = (numValue * 100);
-                    }
+                return block.prices.get(index);
+            }
+            count(hits);
+            return cached;
+        }
+        int slot = (int) ((value * 0x9E3779B97F4A7C15L) >>> (64 - OVERFLOW_BITS));
+        Price cached = overflowPrices.get(slot);
+        if (cached != null && cached.getValue() == value) {
+            count(hits);
+            return cached;
+        }
+        count(misses);
+        Price limitPrice = new Price(value);
+        if (overflowPrices.compareAndSet(slot, cached, limitPrice) && cached != null) {
+            count(evictions);
+        }
+        return limitPrice;
+    }
+
+    /**
+     * This method tells the factory a price the market is trading at, such as
+     * a configured opening price or the last sale of a product, so prices
+     * near it are kept for good. The block the price falls in and the block
+     * each side of it are added if they are not there yet, unless there are
+     * already MAX_BLOCKS blocks.
+     *
+     * @param value reference price in cents
+     */
+    public static void addReferencePrice(long value) {
+        long key = value >> BLOCK_BITS;
+        PriceBlock[] current = blocks;
+        if (findBlock(current, key - 1) != null && findBlock(current, key) != null && findBlock(current, key + 1) != null) {
+            return;
+        }
+        synchronized (PriceFactory.class) {
+            for (long k = key - 1; k <= key + 1; k++) {
+                current = blocks;
+                if (findBlock(current, k) != null || current.length == MAX_BLOCKS) {
+                    continue;
                 }
-                if (cents.isEmpty()) {
-                    newValue = cents.concat("00");
-                    cents = newValue;
-                    value = cents;
-                    if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
-                        numValue = (numValue + Long.valueOf(value));
-                    }
-                } else if (cents.length() == 1) {
-                    newValue = cents.concat("0");
-                    value = newValue;
-                    if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
-                        numValue = (numValue + Long.valueOf(value));
-                    }
-                } else if (cents.length() == 2) {
-                    value = cents;
-                    if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
-                        numValue = (numValue + Long.valueOf(value));
-                    }
-                } else if (cents.length() >= 3) {
-                    newValue = cents.substring(0, 2);
-                    value = newValue;
-                    if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
-                        numValue = (numValue + Long.valueOf(value));
-                    }
+                int at = 0;
+                while (at < current.length && current[at].key < k) {
+                    at++;
                 }
-            }
-        } else {
-            if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
-                numValue = Long.valueOf(value);
-                numValue = (numValue * 100);
+                PriceBlock[] added = new PriceBlock[current.length + 1];
+                System.arraycopy(current, 0, added, 0, at);
+                added[at] = new PriceBlock(k);
+                System.arraycopy(current, at, added, at + 1, current.length - at);
+                blocks = added;
             }
         }
+    }
 
-        if (isNegative == true) {
-            numValue = (numValue * -1);
-        }
+    /**
+     * This method turns counting cache hits, misses and evictions on or off.
+     * It is off to begin with, since counting writes to memory shared by
+     * every thread that makes a price.
+     *
+     * @param enabled true to count
+     */
+    public static void setStatisticsEnabled(boolean enabled) {
+        statistics = enabled;
+    }
 
-        // transfer long value to makeLimitPrice(long value) 
-        Price limitPrice = makeLimitPrice(numValue);
-        return limitPrice;
+    /**
+     * Returns the number of limit prices found in the cache so far while
+     * statistics were turned on.
+     *
+     * @return number of hits
+     */
+    public static long getCacheHits() {
+        return hits.get();
     }
 
     /**
-     * This method checks if the value is already in the hash map(Prices), if so
-     * it returns with that Price object, if not it returns with a new Price
-     * object based off its value.
+     * Returns the number of limit prices that were not in the cache and had to
+     * be made so far while statistics were turned on.
      *
-     * @param value long
-     * @return Price object
-     * @see price.Price#Price(long)
+     * @return number of misses
      */
-    public static Price makeLimitPrice(long value) {
-        Long valueKey = value;
-        Integer key = valueKey.hashCode();
-        Price limitPrice;
-        /* check to see if value is already stored in prices */
-        if (prices.containsKey(key) == true) {
-            limitPrice = prices.get(key);
-            return limitPrice;
-        } else /* create a new Limit Price with the specified value and store it in the hashmap */ {
-            limitPrice = new Price(value);
-            prices.put(key, limitPrice);
-            return limitPrice;
-        }
+    public static long getCacheMisses() {
+        return misses.get();
     }
 
     /**
-     * Public Static method to make a Market Price object, checks to see if a
-     * market price object is already stored in the hash map(prices) if so it
-     * returns with that object, if not it creates a new market price object and
-     * returns that.
+     * Returns the number of limit prices pushed out of the cache by another
+     * price so far while statistics were turned on.
+     *
+     * @return number of evictions
+     */
+    public static long getCacheEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Public Static method to return the Market Price object, which is created
+     * once and shared.
      *
      * @return Market Price object
      */
     public static Price makeMarketPrice() {
-        /* check to see if a Market Price object is already been created */
-        Boolean checkMKT = true;
-        int key = checkMKT.hashCode();
-        Price marketPrice;
-        if (prices.containsKey(key) == true) {
-            marketPrice = prices.get(key);
-            return marketPrice;
-        } else // create a new Market Price object and store it in the hashmap
-        {
-            marketPrice = new Price();
-            prices.put(key, marketPrice);
-            return marketPrice;
+        return marketPrice;
+    }
+
+    /**
+     * Private method to add one to a counter if statistics are turned on.
+     *
+     * @param counter to add to
+     */
+    private static void count(StripedCounter counter) {
+        if (statistics) {
+            counter.increment();
+        }
+    }
+
+    /**
+     * Private method to find the block with a key in blocks ordered by key.
+     *
+     * @param in blocks to search
+     * @param key value in cents shifted right by BLOCK_BITS
+     * @return block or null if there is none
+     */
+    private static PriceBlock findBlock(PriceBlock[] in, long key) {
+        int low = 0;
+        int high = in.length - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midKey = in[mid].key;
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return in[mid];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * This class holds the limit prices whose value in cents shifted right by
+     * BLOCK_BITS is its key, each made the first time it is asked for.
+     */
+    private static final class PriceBlock {
+
+        /**
+         * Value in cents of every price in the block shifted right by
+         * BLOCK_BITS.
+         */
+        private final long key;
+        /**
+         * Price of each value in the block, indexed by its low BLOCK_BITS
+         * bits, or null if not made yet.
+         */
+        private final AtomicReferenceArray<Price> prices = new AtomicReferenceArray<>(BLOCK_SIZE);
+
+        /**
+         * Private construction method to create an empty block.
+         *
+         * @param key of block
+         */
+        private PriceBlock(long key) {
+            this.key = key;
         }
     }
 }
@@ -0,0 +1,74 @@
+/**
+ * PriceMath.java
+ */
+package price;
+
+import price.utils.InvalidPriceOperation;
+
+/**
+ * This class does price arithmetic on values in cents held in primitive
+ * longs, for code that adds up many prices and does not need a Price object
+ * for each step.<br> Unlike plain long arithmetic, a result that does not fit
+ * in a long is reported with an InvalidPriceOperation instead of wrapping
+ * around.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public final class PriceMath {
+
+    /**
+     * Private Constructor Method, this class only has static methods.
+     */
+    private PriceMath() {
+    }
+
+    /**
+     * This method will add two values in cents.
+     *
+     * @param a value in cents
+     * @param b value in cents
+     * @return a + b
+     * @throws InvalidPriceOperation if the result does not fit in a long
+     */
+    public static long add(long a, long b) throws InvalidPriceOperation {
+        long r = a + b;
+        if (((a ^ r) & (b ^ r)) < 0) {
+            throw new InvalidPriceOperation("InvalidPriceOperation: Price overflow adding " + a + " and " + b + " cents");
+        }
+        return r;
+    }
+
+    /**
+     * This method will subtract one value in cents from another.
+     *
+     * @param a value in cents
+     * @param b value in cents to subtract
+     * @return a - b
+     * @throws InvalidPriceOperation if the result does not fit in a long
+     */
+    public static long subtract(long a, long b) throws InvalidPriceOperation {
+        long r = a - b;
+        if (((a ^ b) & (a ^ r)) < 0) {
+            throw new InvalidPriceOperation("InvalidPriceOperation: Price overflow subtracting " + b + " from " + a + " cents");
+        }
+        return r;
+    }
+
+    /**
+     * This method will multiply a value in cents by a volume.
+     *
+     * @param a value in cents
+     * @param volume to multiply by
+     * @return a * volume
+     * @throws InvalidPriceOperation if the result does not fit in a long
+     */
+    public static long multiply(long a, int volume) throws InvalidPriceOperation {
+        long r = a * volume;
+        if ((Math.abs(a) >>> 31) != 0 && volume != 0 && (r / volume != a || (a == Long.MIN_VALUE && volume == -1))) {
+            throw new InvalidPriceOperation("InvalidPriceOperation: Price overflow multiplying " + a + " cents by " + volume);
+        }
+        return r;
+    }
+}
+//end of file
@@ -0,0 +1,237 @@
+/**
+ * PriceParser.java
+ */
+package price;
+
+import exceptions.InvalidValueException;
+
+/**
+ * This class turns the text of a price into its value in cents in one pass
+ * over the characters, without making any intermediate Strings.<br> It reads
+ * Strings and other character sequences, and ranges of single byte characters
+ * such as those of a wire format. '$' and ',' are ignored wherever they are,
+ * and a '-' anywhere makes the price negative. The rest is read the way
+ * PriceFactory always has: dollars, then up to two digits of cents with any
+ * further digits dropped, so "12", "12.", "12.3", "12.34" and "12.349" are
+ * $12.00, $12.00, $12.30, $12.34 and $12.34; a leading '.' means cents only and
+ * needs two digits. Anything else is rejected with an InvalidValueException.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+final class PriceParser {
+
+    /**
+     * Message of the exception thrown for text that is not a price.
+     */
+    private static final String NOT_NUMERIC = "InvalidValueException: String not in numeric format given to Price.PriceFactory#makeLimitPrice.";
+
+    /**
+     * Private Constructor Method, this class only has static methods.
+     */
+    private PriceParser() {
+    }
+
+    /**
+     * This method will return the value in cents of the price in the text.
+     *
+     * @param text of price
+     * @return value in cents
+     * @throws InvalidValueException if the text is not a price
+     */
+    static long parse(CharSequence text) throws InvalidValueException {
+        if (text == null) {
+            throw new InvalidValueException(NOT_NUMERIC);
+        }
+        return parse(text, null, 0, text.length());
+    }
+
+    /**
+     * This method will return the value in cents of the price in a range of
+     * single byte characters.
+     *
+     * @param bytes holding the text of price
+     * @param offset of first byte
+     * @param length number of bytes
+     * @return value in cents
+     * @throws InvalidValueException if the bytes are not a price
+     */
+    static long parse(byte[] bytes, int offset, int length) throws InvalidValueException {
+        if (bytes == null || offset < 0 || length < 0 || offset > bytes.length - length) {
+            throw new InvalidValueException(NOT_NUMERIC);
+        }
+        return parse(null, bytes, offset, length);
+    }
+
+    /**
+     * Private method to parse either a character sequence or a byte range,
+     * whichever is not null.
+     *
+     * @param text character sequence, or null
+     * @param bytes byte array, or null
+     * @param offset of first character
+     * @param length number of characters
+     * @return value in cents
+     * @throws InvalidValueException if not a price
+     */
+    private static long parse(CharSequence text, byte[] bytes, int offset, int length) throws InvalidValueException {
+        int end = offset + length;
+        int last = end - 1;
+        while (last >= offset && ignored(charAt(text, bytes, last))) {
+            last--;
+        }
+        int i = offset;
+        boolean negative = false;
+        while (i < end && ignored(charAt(text, bytes, i))) {
+            negative |= charAt(text, bytes, i) == '-';
+            i++;
+        }
+        if (i > last) {
+            throw new InvalidValueException(NOT_NUMERIC);
+        }
+        long value;
+        if (charAt(text, bytes, i) == '.') {
+            // cents only, from the first two digits with every '.' skipped
+            value = 0;
+            int digits = 0;
+            for (; i < end; i++) {
+                char c = charAt(text, bytes, i);
+                if (c == '-') {
+                    negative = true;
+                } else if (!ignored(c) && c != '.' && digits < 2) {
+                    value = value * 10 + digit(c);
+                    digits++;
+                }
+            }
+            if (digits < 2) {
+                throw new InvalidValueException(NOT_NUMERIC);
+            }
+        } else if (charAt(text, bytes, last) == '.') {
+            // whole dollars, from every digit with every '.' skipped
+            value = 0;
+            for (; i < end; i++) {
+                char c = charAt(text, bytes, i);
+                if (c == '-') {
+                    negative = true;
+                } else if (!ignored(c) && c != '.') {
+                    value = appendDigit(value, digit(c));
+                }
+            }
+            value = appendDigit(appendDigit(value, 0), 0);
+        } else {
+            // dollars up to the first '.', then cents up to the next one
+            long dollars = 0;
+            boolean plain = true;
+            boolean valid = true;
+            boolean digits = false;
+            int dollarChars = 0;
+            for (; i < end; i++) {
+                char c = charAt(text, bytes, i);
+                if (c == '-') {
+                    negative = true;
+                } else if (c == '.') {
+                    break;
+                } else if (!ignored(c)) {
+                    if (c == '+' && dollarChars == 0) {
+                        plain = false;
+                    } else {
+                        int d = Character.digit(c, 10);
+                        if (d < 0 || dollars > (Long.MAX_VALUE - d) / 10) {
+                            valid = false;
+                        } else {
+                            dollars = dollars * 10 + d;
+                            plain &= c >= '0' && c <= '9';
+                            digits = true;
+                        }
+                    }
+                    dollarChars++;
+                }
+            }
+            if (i == end) {
+                if (!valid || !plain) {
+                    throw new InvalidValueException(NOT_NUMERIC);
+                }
+                value = dollars * 100;
+            } else {
+                if (!valid || !digits || (!plain && dollars != 0)) {
+                    throw new InvalidValueException(NOT_NUMERIC);
+                }
+                long cents = 0;
+                int centChars = 0;
+                boolean inCents = true;
+                for (i++; i < end; i++) {
+                    char c = charAt(text, bytes, i);
+                    if (c == '-') {
+                        negative = true;
+                    } else if (c == '.') {
+                        inCents = false;
+                    } else if (inCents && !ignored(c)) {
+                        if (centChars < 2) {
+                            cents = cents * 10 + digit(c);
+                        }
+                        centChars++;
+                    }
+                }
+                if (centChars == 1) {
+                    cents *= 10;
+                }
+                value = dollars * 100 + cents;
+            }
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Private method to return the character at an index of whichever of the
+     * character sequence and byte array is not null.
+     *
+     * @param text character sequence, or null
+     * @param bytes byte array, or null
+     * @param index of character
+     * @return character
+     */
+    private static char charAt(CharSequence text, byte[] bytes, int index) {
+        return (text != null) ? text.charAt(index) : (char) (bytes[index] & 0xFF);
+    }
+
+    /**
+     * Private method to return true for a character that is dropped from the
+     * text before reading it: '$', ',' and '-'.
+     *
+     * @param c character
+     * @return true if dropped
+     */
+    private static boolean ignored(char c) {
+        return c == '$' || c == ',' || c == '-';
+    }
+
+    /**
+     * Private method to return the value of a digit from '0' to '9'.
+     *
+     * @param c character
+     * @return value of digit
+     * @throws InvalidValueException if not a digit
+     */
+    private static int digit(char c) throws InvalidValueException {
+        if (c < '0' || c > '9') {
+            throw new InvalidValueException(NOT_NUMERIC);
+        }
+        return c - '0';
+    }
+
+    /**
+     * Private method to append a digit to a value.
+     *
+     * @param value so far
+     * @param d digit
+     * @return new value
+     * @throws InvalidValueException if the value no longer fits in a long
+     */
+    private static long appendDigit(long value, int d) throws InvalidValueException {
+        if (value > (Long.MAX_VALUE - d) / 10) {
+            throw new InvalidValueException(NOT_NUMERIC);
+        }
+        return value * 10 + d;
+    }
+}
+//end of file
@@ -0,0 +1,60 @@
+/**
+ * StripedCounter.java
+ */
+package price;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is a counter that many threads can add to at once without all
+ * updating the same memory.<br> Each thread adds to one of several cells,
+ * picked by its thread id and spaced a cache line apart, and the value is the
+ * sum of the cells.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+final class StripedCounter {
+
+    /**
+     * Number of cells, a power of two.
+     */
+    private static final int CELLS = 16;
+    /**
+     * Distance between two cells in longs, one cache line.
+     */
+    private static final int SPACING = 8;
+    /**
+     * Cells, only every SPACING'th slot is used.
+     */
+    private final AtomicLongArray cells = new AtomicLongArray(CELLS * SPACING);
+
+    /**
+     * Package-visible construction method to create a counter at 0.
+     */
+    StripedCounter() {
+    }
+
+    /**
+     * This method will add one to the counter.
+     */
+    void increment() {
+        int cell = (int) (Thread.currentThread().getId() & (CELLS - 1));
+        cells.getAndIncrement(cell * SPACING);
+    }
+
+    /**
+     * Returns the current value of the counter. Adds made while it runs may or
+     * may not be counted.
+     *
+     * @return value
+     */
+    long get() {
+        long sum = 0;
+        for (int i = 0; i < CELLS; i++) {
+            sum += cells.get(i * SPACING);
+        }
+        return sum;
+    }
+}
+//end of file
@@ -0,0 +1,53 @@
+/*
+ * AmendMessage.java
+ */
+package publishers;
+
+import constants.BookSide;
+import price.Price;
+
+/**
+ * This class encapsulates data related to the amendment of an order by a
+ * user: the order's price and remaining volume once amended.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public class AmendMessage extends Messenger implements Comparable<AmendMessage>, Message {
+
+    /**
+     * Public Construction method to create a new Amend Message for users.
+     *
+     * @param userName associated with amend message
+     * @param productSymbol
+     * @param p price object of amended order
+     * @param newVolume remaining volume of amended order
+     * @param amendDetails details of amend message
+     * @param s side of book BUY/SELL
+     * @param newId id of amended order
+     * @throws Exception
+     */
+    public AmendMessage(String userName, String productSymbol, Price p, int newVolume, String amendDetails, BookSide s, String newId) throws Exception {
+        super(userName, productSymbol, p, newVolume, amendDetails, s, newId);
+    }
+
+    /**
+     * Public compare To method which compares the prices of two AmendMessages.
+     *
+     * @param am AmendMessage passed in
+     * @return integer from call to compareTo on price, 0 for success, -1 for
+     * exception or failure
+     */
+    @Override
+    public int compareTo(AmendMessage am) {
+        try {
+            Price currentPrice = getPrice();
+            Price comparePrice = am.getPrice();
+            return currentPrice.compareTo(comparePrice);
+        } catch (Exception ex) {
+            System.out.print(ex.getMessage());
+            return -1;
+        }
+    }
+}
+//end of file
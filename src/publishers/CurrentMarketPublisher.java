@@ -68,9 +68,8 @@ public class CurrentMarketPublisher implements Publisher {
             Price sp = md.sellPrice;
             sp = checkPrice(sp);
             if (!myPublisher.getSubscribers().isEmpty()) {
-                HashMap<String, HashMap> subscribers = myPublisher.getSubscribers();
-                if (subscribers.get(product) != null) {
-                    HashMap<Integer, User> users = subscribers.get(product);
+                HashMap<String, User> users = myPublisher.getSubscribers(product);
+                if (users != null) {
                     if (!users.isEmpty()) {
                         Iterator it = users.entrySet().iterator();
                         while (it.hasNext()) {
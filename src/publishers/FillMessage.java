@@ -4,17 +4,28 @@
 package publishers;
 
 import constants.BookSide;
+import exceptions.ExceptionHandler;
 import price.Price;
 
 /**
  * This class encapsulates data related to the fill (trade) of an order or
- * quote-side.
+ * quote-side.<br> Fill messages sent by the book are reused: the book sets one
+ * message to each of its fills in turn, so a message it publishes is only
+ * valid until the user's acceptMessage returns. A user that wants to keep a
+ * fill copies the values it needs, or the text of the message, before
+ * returning, and must not hold on to the message itself.
  *
  * @author Kevin Patrick Westropp
  * @version StockExVirtuoso.Version.1.0
  */
 public class FillMessage extends Messenger implements Comparable<FillMessage>, Message {
 
+    /**
+     * Volume left on the order or quote-side after the fill, or -1 if the
+     * details were given as text.
+     */
+    private int remainingVolume = -1;
+
     /**
      * Public Construction method to create a new Fill Message.
      *
@@ -31,6 +42,84 @@ public class FillMessage extends Messenger implements Comparable<FillMessage>, M
         super(userName, productSymbol, p, newVolume, details, s, newId);
     }
 
+    /**
+     * Public Construction method to create a new Fill Message whose details
+     * tell the volume left after the fill. The details text is only made if
+     * it is asked for.
+     *
+     * @param userName of user
+     * @param productSymbol of stock
+     * @param p price object
+     * @param newVolume
+     * @param remaining volume left on the order or quote-side
+     * @param s side of book
+     * @param newId of order/quote
+     * @throws Exception
+     */
+    public FillMessage(String userName, String productSymbol, Price p, int newVolume, int remaining, BookSide s, String newId) throws Exception {
+        super(userName, productSymbol, p, newVolume, s, newId);
+        setRemainingVolume(remaining);
+    }
+
+    /**
+     * This method will set every value of this message to those of another
+     * fill, so the same object can be published for many fills. Whoever
+     * publishes it this way must not change it while it is being delivered.
+     *
+     * @param userName of user
+     * @param productSymbol of stock
+     * @param p price object
+     * @param newVolume
+     * @param remaining volume left on the order or quote-side
+     * @param s side of book
+     * @param newId of order/quote
+     * @throws Exception
+     */
+    public void setFill(String userName, String productSymbol, Price p, int newVolume, int remaining, BookSide s, String newId) throws Exception {
+        reset(userName, productSymbol, p, newVolume, s, newId);
+        setRemainingVolume(remaining);
+    }
+
+    /**
+     * Private set method to set the volume left after the fill, which the
+     * details are made from.
+     *
+     * @param remaining volume left on the order or quote-side
+     * @throws Exception
+     */
+    private void setRemainingVolume(int remaining) throws Exception {
+        if (ExceptionHandler.checkIntNegative(remaining, "publishers.FillMessage#setRemainingVolume.")) {
+            remainingVolume = remaining;
+        }
+    }
+
+    /**
+     * Public set method to set details about message, replacing details made
+     * from the remaining volume.
+     *
+     * @param details of message
+     * @throws Exception
+     */
+    @Override
+    public void setDetails(String details) throws Exception {
+        super.setDetails(details);
+        remainingVolume = -1;
+    }
+
+    /**
+     * Public get method to get details of message, made from the remaining
+     * volume if that is what was given.
+     *
+     * @return String of details about message
+     */
+    @Override
+    public String getDetails() {
+        if (remainingVolume >= 0) {
+            return "leaving " + remainingVolume;
+        }
+        return super.getDetails();
+    }
+
     /**
      * Public compare To method which compares the prices of two FillMessages.
      *
@@ -0,0 +1,281 @@
+/*
+ * IndicativeOpenPublisher.java
+ */
+package publishers;
+
+import client.User;
+import exceptions.ExceptionHandler;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import price.Price;
+import price.PriceFactory;
+
+/**
+ * This class implements the "singleton" design pattern, and only a single
+ * instance should ever be created.<br> This class sends out the indicative
+ * opening price and volume of each product while the market is in PREOPEN.
+ * Updates for a product are throttled: after one is sent, the next is held
+ * back until the minimum interval has passed, and only the latest held value
+ * is sent then.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public class IndicativeOpenPublisher implements Publisher {
+
+    /**
+     * Default shortest time between two updates for a product, in
+     * milliseconds.
+     */
+    public static final long DEFAULT_MIN_INTERVAL_MILLIS = 100;
+    /**
+     * Delegate - will refer to myPublisher implementation object.
+     */
+    private static PublisherImpl myPublisher;
+    /**
+     * Single instance of the IndicativeOpenPublisher.
+     */
+    private static IndicativeOpenPublisher instance;
+    /**
+     * Throttle state of each product.
+     */
+    private final HashMap<String, Throttle> throttles = new HashMap<>();
+    /**
+     * Thread that sends held back updates, created when first needed.
+     */
+    private ScheduledThreadPoolExecutor timer;
+    /**
+     * Shortest time between two updates for a product, in nanoseconds.
+     */
+    private long minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_MIN_INTERVAL_MILLIS);
+
+    /**
+     * Private constructor method for single instance construction.
+     */
+    private IndicativeOpenPublisher() {
+    }
+
+    /**
+     * Public Get Instance Method which returns instance, or starts a new one,
+     * if not created.
+     *
+     * @return Instance of Indicative Open Publisher
+     */
+    public synchronized static IndicativeOpenPublisher getInstance() {
+        if (instance == null) {
+            instance = new IndicativeOpenPublisher();
+            myPublisher = new PublisherImpl();
+        }
+        return instance;
+    }
+
+    /**
+     * This method will set the shortest time between two updates for a
+     * product. 0 sends every update at once.
+     *
+     * @param millis minimum interval
+     * @throws Exception
+     */
+    public synchronized void setMinInterval(long millis) throws Exception {
+        if (ExceptionHandler.checkLongNegative(millis, "publishers.IndicativeOpenPublisher#setMinInterval.")) {
+            minIntervalNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+    }
+
+    /**
+     * Public synchronized publish method to publish the indicative opening
+     * price and volume of a product. A null price means the book would not
+     * trade at the open, and is sent as $0.00 with volume 0.
+     *
+     * @param product symbol
+     * @param p indicative opening price, or null
+     * @param v volume that would trade at that price
+     * @throws Exception
+     */
+    public synchronized void publishIndicativeOpen(String product, Price p, int v) throws Exception {
+        String exString = "publishers.IndicativeOpenPublisher#publishIndicativeOpen";
+        if (ExceptionHandler.checkString(product, exString) && ExceptionHandler.checkIntNegative(v, exString)) {
+            Throttle t = throttles.get(product);
+            if (t == null) {
+                t = new Throttle();
+                throttles.put(product, t);
+            }
+            long now = System.nanoTime();
+            if (!t.scheduled && (!t.sent || now - t.lastSentNanos >= minIntervalNanos)) {
+                send(product, p, v);
+                t.sent = true;
+                t.lastSentNanos = now;
+            } else {
+                t.pendingPrice = p;
+                t.pendingVolume = v;
+                t.pending = true;
+                if (!t.scheduled) {
+                    t.scheduled = true;
+                    schedule(product, minIntervalNanos - (now - t.lastSentNanos));
+                }
+            }
+        }
+    }
+
+    /**
+     * This method will drop any held back update for a product, for when its
+     * market opens and the indicative price no longer applies.
+     *
+     * @param product symbol
+     */
+    public synchronized void discard(String product) {
+        Throttle t = throttles.get(product);
+        if (t != null) {
+            t.pending = false;
+            t.pendingPrice = null;
+        }
+    }
+
+    /**
+     * Public synchronized subscribe method used to subscribe to indicative
+     * opening prices.
+     *
+     * @param u user
+     * @param product symbol
+     * @throws Exception
+     */
+    @Override
+    public synchronized void subscribe(User u, String product) throws Exception {
+        if (myPublisher != null) {
+            myPublisher.subscribe(u, product);
+        }
+    }
+
+    /**
+     * Public synchronized un-subscribe method used to un-subscribe to
+     * indicative opening prices.
+     *
+     * @param u user to un-subscribe
+     * @param product symbol
+     * @throws Exception
+     */
+    @Override
+    public synchronized void unSubscribe(User u, String product) throws Exception {
+        if (myPublisher != null) {
+            myPublisher.unSubscribe(u, product);
+        }
+    }
+
+    /**
+     * Private method run by the timer to send the latest held back update for
+     * a product.
+     *
+     * @param product symbol
+     */
+    private synchronized void flush(String product) {
+        Throttle t = throttles.get(product);
+        if (t == null) {
+            return;
+        }
+        t.scheduled = false;
+        if (t.pending) {
+            Price p = t.pendingPrice;
+            t.pending = false;
+            t.pendingPrice = null;
+            t.lastSentNanos = System.nanoTime();
+            try {
+                send(product, p, t.pendingVolume);
+            } catch (Exception ex) {
+                Logger.getLogger(IndicativeOpenPublisher.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    /**
+     * Private method to have the timer flush a product after a delay.
+     *
+     * @param product symbol
+     * @param delayNanos delay
+     */
+    private void schedule(final String product, long delayNanos) {
+        if (timer == null) {
+            timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "indicative-open-publisher");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        timer.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flush(product);
+            }
+        }, Math.max(delayNanos, 0), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Private method to send an update to every subscriber of the product.
+     *
+     * @param product symbol
+     * @param p indicative opening price, or null
+     * @param v volume
+     * @throws Exception
+     */
+    private void send(String product, Price p, int v) throws Exception {
+        if (p == null) {
+            p = PriceFactory.makeLimitPrice("0.00");
+            v = 0;
+        }
+        if (!myPublisher.getSubscribers().isEmpty()) {
+            HashMap<String, User> users = myPublisher.getSubscribers(product);
+            if (users != null) {
+                if (!users.isEmpty()) {
+                    Iterator it = users.entrySet().iterator();
+                    while (it.hasNext()) {
+                        Map.Entry userEntry = (Map.Entry) it.next();
+                        if (userEntry.getValue() != null) {
+                            User u = (User) userEntry.getValue();
+                            u.acceptIndicativeOpen(product, p, v);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * This class is the throttle state of one product.
+     */
+    private static final class Throttle {
+
+        /**
+         * True once an update has been sent.
+         */
+        private boolean sent;
+        /**
+         * Time the last update was sent.
+         */
+        private long lastSentNanos;
+        /**
+         * True if an update is held back.
+         */
+        private boolean pending;
+        /**
+         * Held back price.
+         */
+        private Price pendingPrice;
+        /**
+         * Held back volume.
+         */
+        private int pendingVolume;
+        /**
+         * True while the timer is due to flush this product.
+         */
+        private boolean scheduled;
+    }
+}
+//end of file
@@ -62,9 +62,8 @@ public class LastSalePublisher implements Publisher {
                 && ExceptionHandler.checkIntZero(v, thisClass)) {
             p = check(p);
             if (myPublisher.getSubscribers() != null) {
-                HashMap<String, HashMap> subscribers = myPublisher.getSubscribers();
-                if (subscribers.get(product) != null) {
-                    HashMap<String, User> users = (HashMap<String, User>) subscribers.get(product);
+                HashMap<String, User> users = myPublisher.getSubscribers(product);
+                if (users != null) {
                     if (!users.isEmpty()) {
                         Iterator it = users.entrySet().iterator();
                         while (it.hasNext()) {
@@ -7,6 +7,7 @@ import client.User;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -48,11 +49,10 @@ public class MessagePublisher implements Publisher {
      */
     public synchronized void publishCancel(CancelMessage cm) {
         if (!myPublisher.getSubscribers().isEmpty()) {
-            HashMap<String, HashMap> subscribers = myPublisher.getSubscribers();
             String userName = cm.getUser();
             String product = cm.getProduct();
-            if (subscribers.get(product) != null) {
-                HashMap<String, User> users = subscribers.get(product);
+            HashMap<String, User> users = myPublisher.getSubscribers(product);
+            if (users != null) {
                 if (users.get(userName) != null) {
                     User u = (User) users.get(userName);
                     u.acceptMessage(cm);
@@ -61,19 +61,62 @@ public class MessagePublisher implements Publisher {
         }
     }
 
+    /**
+     * Public synchronized publish amend method to send an amend
+     * acknowledgement to the user whose order was amended.
+     *
+     * @param am amend message
+     */
+    public synchronized void publishAmend(AmendMessage am) {
+        if (!myPublisher.getSubscribers().isEmpty()) {
+            String userName = am.getUser();
+            String product = am.getProduct();
+            HashMap<String, User> users = myPublisher.getSubscribers(product);
+            if (users != null) {
+                if (users.get(userName) != null) {
+                    User u = (User) users.get(userName);
+                    u.acceptMessage(am);
+                }
+            }
+        }
+    }
+
+    /**
+     * Public synchronized publish cancels method to send a batch of cancel
+     * messages for one user and product to that user, looking the user up
+     * once for the whole batch.
+     *
+     * @param userName of user
+     * @param product symbol
+     * @param messages cancel messages, in order
+     */
+    public synchronized void publishCancels(String userName, String product, List<CancelMessage> messages) {
+        if (!myPublisher.getSubscribers().isEmpty()) {
+            HashMap<String, User> users = myPublisher.getSubscribers(product);
+            if (users != null) {
+                if (users.get(userName) != null) {
+                    User u = (User) users.get(userName);
+                    for (CancelMessage cm : messages) {
+                        u.acceptMessage(cm);
+                    }
+                }
+            }
+        }
+    }
+
     /**
      * Public synchronized publish fill method to send out fill messages to
-     * users.
+     * users. The message may be set to the next fill once this returns, so it
+     * is handed to the user as it is and never kept here.
      *
      * @param fm fill message
      */
     public synchronized void publishFill(FillMessage fm) {
         if (!myPublisher.getSubscribers().isEmpty()) {
-            HashMap<String, HashMap> subscribers = myPublisher.getSubscribers();
             String userName = fm.getUser();
             String product = fm.getProduct();
-            if (subscribers.get(product) != null) {
-                HashMap<String, User> users = subscribers.get(product);
+            HashMap<String, User> users = myPublisher.getSubscribers(product);
+            if (users != null) {
                 if (users.get(userName) != null) {
                     User u = (User) users.get(userName);
                     u.acceptMessage(fm);
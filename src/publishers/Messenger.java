@@ -68,6 +68,43 @@ public class Messenger implements Message {
         setId(newId);
     }
 
+    /**
+     * Protected Construction method to create a Messenger message object
+     * whose details are given by the subclass.
+     *
+     * @param userName name of user
+     * @param productSymbol
+     * @param p price
+     * @param newVolume
+     * @param s book-side BUY/SELL
+     * @param newId string identifier
+     * @throws Exception
+     */
+    protected Messenger(String userName, String productSymbol, Price p, int newVolume, BookSide s, String newId) throws Exception {
+        reset(userName, productSymbol, p, newVolume, s, newId);
+    }
+
+    /**
+     * Protected method to set every value of the message but the details, so
+     * a subclass can reuse one message object for many messages.
+     *
+     * @param userName name of user
+     * @param productSymbol
+     * @param p price
+     * @param newVolume
+     * @param s book-side BUY/SELL
+     * @param newId string identifier
+     * @throws Exception
+     */
+    protected void reset(String userName, String productSymbol, Price p, int newVolume, BookSide s, String newId) throws Exception {
+        setUser(userName);
+        setProduct(productSymbol);
+        setPrice(p);
+        setVolume(newVolume);
+        setSide(s);
+        setId(newId);
+    }
+
     /**
      * Private set method to set user name of message.
      *
@@ -4,8 +4,10 @@
 package publishers;
 
 import client.User;
+import java.util.ArrayList;
 import java.util.HashMap;
 import publishers.utils.InvalidSubscriptionException;
+import tradable.InstrumentDirectory;
 
 /**
  * This class implements the Publisher Interface and is used as a delegate to
@@ -22,12 +24,19 @@ public class PublisherImpl implements Publisher {
      * of users.
      */
     private HashMap<String, HashMap<String, User>> subscribers;
+    /**
+     * The same users of each stock as in subscribers, indexed by the
+     * instrument id of the stock symbol, or null. Filled in the first time the
+     * users of a stock are asked for.
+     */
+    private ArrayList<HashMap<String, User>> subscribersById;
 
     /**
      * Public Constructor Method to create a new Publisher Implementation.
      */
     public PublisherImpl() {
         subscribers = new HashMap<>();
+        subscribersById = new ArrayList<>();
     }
 
     /**
@@ -91,5 +100,31 @@ public class PublisherImpl implements Publisher {
     public synchronized HashMap getSubscribers() {
         return this.subscribers;
     }
+
+    /**
+     * Public get method to get the users subscribed to a stock, found by the
+     * instrument id of the stock symbol, or null if there are none. A symbol
+     * that is not a product is found by name.
+     *
+     * @param product symbol
+     * @return HashMap of users or null
+     */
+    public synchronized HashMap<String, User> getSubscribers(String product) {
+        int id = InstrumentDirectory.getInstance().getId(product);
+        if (id < 0) {
+            return subscribers.get(product);
+        }
+        HashMap<String, User> users = (id < subscribersById.size()) ? subscribersById.get(id) : null;
+        if (users == null) {
+            users = subscribers.get(product);
+            if (users != null) {
+                while (subscribersById.size() <= id) {
+                    subscribersById.add(null);
+                }
+                subscribersById.set(id, users);
+            }
+        }
+        return users;
+    }
 }
 //end of file
\ No newline at end of file
@@ -5,11 +5,13 @@ package publishers;
 
 import client.User;
 import exceptions.ExceptionHandler;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import price.Price;
 import price.PriceFactory;
+import tradable.InstrumentDirectory;
 
 /**
  * This class implements the "singleton" design pattern, and only one should
@@ -30,9 +32,14 @@ public class TickerPublisher implements Publisher {
      */
     private static TickerPublisher instance;
     /**
-     * HashMap holds most up to date stock values
+     * Most up to date stock values, indexed by the instrument id of the stock
+     * symbol.
      */
-    private static HashMap<String, Price> stocks = new HashMap();
+    private static Price[] stocks = new Price[16];
+    /**
+     * Most up to date stock values of symbols that are not products.
+     */
+    private static HashMap<String, Price> unlistedStocks = new HashMap<>();
 
     /**
      * Private Constructor for single instance construction.
@@ -66,10 +73,13 @@ public class TickerPublisher implements Publisher {
         if (ExceptionHandler.checkString(product, "publishers.TickerPublisher#publishTicker.")) {
             p = checkPrice(p);
             if (!myPublisher.getSubscribers().isEmpty()) {
-                HashMap<String, HashMap> subscribers = myPublisher.getSubscribers();
                 char movement = ' ';
-                if (!stocks.isEmpty() && stocks.get(product) != null) {
-                    Price recentPrice = stocks.get(product);
+                int id = InstrumentDirectory.getInstance().getId(product);
+                if (id >= stocks.length) {
+                    stocks = Arrays.copyOf(stocks, Math.max(id + 1, stocks.length * 2));
+                }
+                Price recentPrice = (id < 0) ? unlistedStocks.get(product) : stocks[id];
+                if (recentPrice != null) {
                     if (p.equals(recentPrice)) {
                         movement = '=';
                     } else if (p.greaterThan(recentPrice)) {
@@ -77,12 +87,14 @@ public class TickerPublisher implements Publisher {
                     } else if (p.lessThan(recentPrice)) {
                         movement = '↓';
                     }
-                    stocks.put(product, p);
+                }
+                if (id < 0) {
+                    unlistedStocks.put(product, p);
                 } else {
-                    stocks.put(product, p);
+                    stocks[id] = p;
                 }
-                if (subscribers.get(product) != null) {
-                    HashMap<Integer, User> users = subscribers.get(product);
+                HashMap<String, User> users = myPublisher.getSubscribers(product);
+                if (users != null) {
                     if (!users.isEmpty()) {
                         Iterator it = users.entrySet().iterator();
                         while (it.hasNext()) {
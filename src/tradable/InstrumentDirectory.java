@@ -0,0 +1,140 @@
+/*
+ * InstrumentDirectory.java
+ */
+package tradable;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class implements the "singleton" design pattern, and only a single
+ * instance should ever be created.<br> This class gives every product symbol a
+ * dense integer id, starting at 0, so books, publishers and positions can keep
+ * their per product data in arrays indexed by id instead of maps keyed by
+ * symbol. Ids are only handed out when a product is created; everywhere else a
+ * symbol is looked up, and a symbol that is not a product has no id. An id is
+ * never reused or taken back.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public final class InstrumentDirectory {
+
+    /**
+     * Value returned for a symbol that has no id.
+     */
+    public static final int NONE = -1;
+    /**
+     * Single instance of the InstrumentDirectory.
+     */
+    private static final InstrumentDirectory instance = new InstrumentDirectory();
+    /**
+     * Id of each symbol.
+     */
+    private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+    /**
+     * Symbol of each id, replaced with a larger copy when full.
+     */
+    private volatile String[] symbols = new String[16];
+    /**
+     * Number of ids handed out.
+     */
+    private volatile int count;
+
+    /**
+     * Private constructor method for single instance construction.
+     */
+    private InstrumentDirectory() {
+    }
+
+    /**
+     * Public Get Instance Method which returns the single instance, created
+     * when the class is loaded so no lock is needed here.
+     *
+     * @return Instance of Instrument Directory
+     */
+    public static InstrumentDirectory getInstance() {
+        return instance;
+    }
+
+    /**
+     * This method will return the id of a product symbol, handing out the next
+     * id the first time the symbol is registered. Only the creation of a
+     * product should register its symbol.
+     *
+     * @param symbol product symbol
+     * @return id of symbol
+     */
+    public int register(String symbol) {
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        return assign(symbol);
+    }
+
+    /**
+     * This method will return the id of a symbol, or NONE if it has none or
+     * is null.
+     *
+     * @param symbol product symbol
+     * @return id of symbol or NONE
+     */
+    public int getId(String symbol) {
+        if (symbol == null) {
+            return NONE;
+        }
+        Integer id = ids.get(symbol);
+        return (id == null) ? NONE : id;
+    }
+
+    /**
+     * This method will return the symbol of an id, or null if there is no such
+     * id.
+     *
+     * @param id of symbol
+     * @return symbol or null
+     */
+    public String getSymbol(int id) {
+        String[] s = symbols;
+        return (id >= 0 && id < s.length) ? s[id] : null;
+    }
+
+    /**
+     * This method will return the number of ids handed out, which is one more
+     * than the highest id.
+     *
+     * @return number of ids
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Private synchronized method to hand out the next id to a symbol, unless
+     * another thread already has.
+     *
+     * @param symbol product symbol
+     * @return id of symbol
+     */
+    private synchronized int assign(String symbol) {
+        if (symbol == null) {
+            throw new IllegalArgumentException("Symbol must not be null.");
+        }
+        Integer id = ids.get(symbol);
+        if (id != null) {
+            return id;
+        }
+        int next = count;
+        String[] s = symbols;
+        if (next == s.length) {
+            s = Arrays.copyOf(s, s.length * 2);
+        }
+        s[next] = symbol;
+        symbols = s;
+        count = next + 1;
+        ids.put(symbol, next);
+        return next;
+    }
+}
+//end of file
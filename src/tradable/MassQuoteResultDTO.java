@@ -0,0 +1,97 @@
+/**
+ * MassQuoteResultDTO.java
+ */
+package tradable;
+
+import constants.RejectReason;
+
+/**
+ * This class uses the "data transfer object" design pattern.<br> It acts as
+ * the single acknowledgement of a mass quote and holds the outcome of every
+ * entry, in the same order as the quotes were sent.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public class MassQuoteResultDTO {
+
+    /**
+     * User id of user who sent the mass quote.
+     */
+    public String user;
+    /**
+     * Product symbol of each entry.
+     */
+    public String[] products;
+    /**
+     * Outcome of each entry.
+     */
+    public RejectReason[] rejectReasons;
+    /**
+     * Extra details of each entry, such as the message of an exception.
+     */
+    public String[] details;
+
+    /**
+     * Construction Method for the Mass Quote Result Data Transfer object with
+     * every entry accepted.
+     *
+     * @param userName
+     * @param entries number of entries
+     */
+    public MassQuoteResultDTO(String userName, int entries) {
+        user = userName;
+        products = new String[entries];
+        rejectReasons = new RejectReason[entries];
+        details = new String[entries];
+        for (int i = 0; i < entries; i++) {
+            rejectReasons[i] = RejectReason.ACCEPTED;
+        }
+    }
+
+    /**
+     * Returns true if the entry was accepted.
+     *
+     * @param entry index
+     * @return true if accepted
+     */
+    public boolean isAccepted(int entry) {
+        return rejectReasons[entry] == RejectReason.ACCEPTED;
+    }
+
+    /**
+     * Returns the number of entries that were accepted.
+     *
+     * @return number of accepted entries
+     */
+    public int getAcceptedCount() {
+        int count = 0;
+        for (RejectReason r : rejectReasons) {
+            if (r == RejectReason.ACCEPTED) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * To String Method which builds a String of the values held by
+     * MassQuoteResultDTO object.
+     *
+     * @return String of the values held by this Mass Quote Result DTO object
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("User: %s, Accepted: %d of %d", user, getAcceptedCount(), rejectReasons.length));
+        for (int i = 0; i < rejectReasons.length; i++) {
+            sb.append(String.format(", [%s: %s", products[i], rejectReasons[i].getDescription()));
+            if (details[i] != null) {
+                sb.append(String.format(" (%s)", details[i]));
+            }
+            sb.append("]");
+        }
+        return sb.toString();
+    }
+}
+//end of file
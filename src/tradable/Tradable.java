@@ -67,6 +67,17 @@ public interface Tradable {
      */
     void setRemainingVolume(int newRemainingVolume) throws Exception;
 
+    /**
+     * Amend method changes the tradable price and remaining quantity in place,
+     * keeping its id. Volume taken off counts as cancelled and volume added
+     * counts towards the original quantity.
+     *
+     * @param newPrice
+     * @param newRemainingVolume
+     * @throws Exception
+     */
+    void amend(Price newPrice, int newRemainingVolume) throws Exception;
+
     /**
      * Get method returns the user id associated with the tradable.
      *
@@ -95,5 +106,14 @@ public interface Tradable {
      * @return id of tradable
      */
     String getId();
+
+    /**
+     * Get method returns the numeric system id, of which getId() is the
+     * String form.
+     *
+     * @return numeric id of tradable
+     * @see tradable.TradableId
+     */
+    long getNumericId();
 }
 //end of file
\ No newline at end of file
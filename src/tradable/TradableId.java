@@ -0,0 +1,150 @@
+/*
+ * TradableId.java
+ */
+package tradable;
+
+import constants.BookSide;
+import exceptions.InvalidValueException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class hands out the numeric system ids of tradables.<br> An id is a
+ * positive long made of a product code, the side and a sequence number that
+ * only ever goes up within one running engine, so ids are unique and can be
+ * kept in primitive maps. The String form of an id is its decimal value and is
+ * only needed for display and for the String based API.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public final class TradableId {
+
+    /**
+     * Number of bits of the sequence number.
+     */
+    private static final int SEQUENCE_BITS = 40;
+    /**
+     * Number of bits of the product code.
+     */
+    private static final int PRODUCT_BITS = 22;
+    /**
+     * Mask of the sequence number.
+     */
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+    /**
+     * Bit set for the SELL side.
+     */
+    private static final long SELL_BIT = 1L << SEQUENCE_BITS;
+    /**
+     * Shift of the product code.
+     */
+    private static final int PRODUCT_SHIFT = SEQUENCE_BITS + 1;
+    /**
+     * Product code of tradables for a symbol that is not a product, the
+     * largest code that fits in an id.
+     */
+    public static final int UNLISTED = (1 << PRODUCT_BITS) - 1;
+    /**
+     * Most digits the String form of an id can have.
+     */
+    private static final int MAX_DIGITS = 19;
+    /**
+     * Value returned for a String that is not an id.
+     */
+    public static final long NONE = -1;
+    /**
+     * Last sequence number handed out.
+     */
+    private static final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Private Constructor Method, this class only has static methods.
+     */
+    private TradableId() {
+    }
+
+    /**
+     * This method will return a new id for a tradable of the product and side.
+     * A tradable for a symbol that is not a product gets the UNLISTED code.
+     *
+     * @param product symbol
+     * @param side of tradable
+     * @return new id
+     * @throws InvalidValueException if the product code does not fit in an id
+     */
+    public static long next(String product, BookSide side) throws InvalidValueException {
+        long code = InstrumentDirectory.getInstance().getId(product);
+        if (code == InstrumentDirectory.NONE) {
+            code = UNLISTED;
+        } else if (code >= UNLISTED) {
+            throw new InvalidValueException("InvalidValueException: Product code " + code + " of " + product
+                    + " does not fit in a tradable id given to tradable.TradableId#next.");
+        }
+        long seq = sequence.incrementAndGet() & SEQUENCE_MASK;
+        return (code << PRODUCT_SHIFT) | ((side == BookSide.SELL) ? SELL_BIT : 0) | seq;
+    }
+
+    /**
+     * Returns the product code held in an id, which is the id of the product
+     * in the InstrumentDirectory, or UNLISTED.
+     *
+     * @param id of tradable
+     * @return product code
+     */
+    public static int productCode(long id) {
+        return (int) (id >>> PRODUCT_SHIFT);
+    }
+
+    /**
+     * Returns the side held in an id.
+     *
+     * @param id of tradable
+     * @return side
+     */
+    public static BookSide side(long id) {
+        return ((id & SELL_BIT) != 0) ? BookSide.SELL : BookSide.BUY;
+    }
+
+    /**
+     * Returns the sequence number held in an id.
+     *
+     * @param id of tradable
+     * @return sequence number
+     */
+    public static long sequence(long id) {
+        return id & SEQUENCE_MASK;
+    }
+
+    /**
+     * Returns the String form of an id.
+     *
+     * @param id of tradable
+     * @return id as a String
+     */
+    public static String toString(long id) {
+        return Long.toString(id);
+    }
+
+    /**
+     * Returns the id a String form stands for, or NONE if the String is not
+     * the String form of an id. Never throws.
+     *
+     * @param id String form of id
+     * @return id or NONE
+     */
+    public static long parse(String id) {
+        if (id == null || id.isEmpty() || id.length() > MAX_DIGITS) {
+            return NONE;
+        }
+        long value = 0;
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            if (c < '0' || c > '9' || value > (Long.MAX_VALUE - (c - '0')) / 10) {
+                return NONE;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+}
+//end of file
@@ -7,7 +7,6 @@ import constants.BookSide;
 import exceptions.ExceptionHandler;
 import exceptions.InvalidValueException;
 import price.Price;
-import price.PriceFactory;
 import tradable.utils.InvalidVolumeException;
 
 /**
@@ -54,6 +53,10 @@ public class Trader implements Tradable {
     /**
      * System ID
      */
+    private long numericId;
+    /**
+     * String form of the System ID, made when first asked for
+     */
     private String id;
 
     /**
@@ -68,7 +71,7 @@ public class Trader implements Tradable {
      * @throws Exception
      */
     protected Trader(String userName, String productSymbol, Price orderPrice, int originalVolume, BookSide side, boolean isQT) throws Exception {
-        setId(orderPrice, userName, productSymbol);
+        setId(orderPrice, userName, productSymbol, side);
         setPrice(orderPrice);
         setUser(userName);
         setProduct(productSymbol);
@@ -115,19 +118,14 @@ public class Trader implements Tradable {
     }
 
     /**
-     * Public Get method which returns price of current tradable object.
+     * Public Get method which returns price of current tradable object.<br>
+     * Prices are immutable flyweights, so the held price is returned as is.
      *
      * @return Price of current order object
      */
     @Override
     public Price getPrice() throws Exception {
-        if (price.isMarket() == true) {
-            Price currentPrice = PriceFactory.makeMarketPrice();
-            return currentPrice;
-        } else {
-            Price currentPrice = PriceFactory.makeLimitPrice(price.toString());
-            return currentPrice;
-        }
+        return price;
     }
 
     /**
@@ -181,6 +179,30 @@ public class Trader implements Tradable {
         }
     }
 
+    /**
+     * Public Amend method which changes the price and remaining volume of the
+     * tradable in place, keeping its id. Volume taken off is added to the
+     * cancelled volume and volume added is added to the original volume.
+     *
+     * @param newPrice of tradable
+     * @param newRemainingVolume of tradable
+     * @throws Exception
+     */
+    @Override
+    public void amend(Price newPrice, int newRemainingVolume) throws Exception {
+        String thisClass = "tradable.Trader#amend.";
+        if (ExceptionHandler.checkObject(newPrice, thisClass) && ExceptionHandler.checkIntNegative(newRemainingVolume, thisClass)
+                && ExceptionHandler.checkIntZero(newRemainingVolume, thisClass)) {
+            if (newRemainingVolume < remainingVolume) {
+                cancelledVolume += remainingVolume - newRemainingVolume;
+            } else {
+                originalVolume += newRemainingVolume - remainingVolume;
+            }
+            remainingVolume = newRemainingVolume;
+            price = newPrice;
+        }
+    }
+
     /**
      * Public Get method to return current remaining volume of tradable.
      *
@@ -291,21 +313,21 @@ public class Trader implements Tradable {
     }
 
     /**
-     * Private Set method for System ID.
+     * Private Set method for System ID. The id is a sequence number that
+     * also holds the product and side; its String form is only made when
+     * asked for.
      *
      * @param orderPrice
      * @param userName
      * @param productSymbol
+     * @param side
      * @throws Exception
      */
-    private void setId(Price orderPrice, String userName, String productSymbol) throws Exception {
-        long currentTime = System.nanoTime();
+    private void setId(Price orderPrice, String userName, String productSymbol, BookSide side) throws Exception {
         String thisClass = "tradable.Trader#setID.";
         if (ExceptionHandler.checkString(userName, thisClass) && ExceptionHandler.checkString(productSymbol, thisClass)
-                && ExceptionHandler.checkObject(orderPrice, thisClass)) {
-            String orderValue = orderPrice.toString();
-            String newId = (userName + productSymbol + orderValue + currentTime);
-            id = newId;
+                && ExceptionHandler.checkObject(orderPrice, thisClass) && ExceptionHandler.checkObject(side, thisClass)) {
+            numericId = TradableId.next(productSymbol, side);
         }
     }
 
@@ -317,9 +339,23 @@ public class Trader implements Tradable {
     @Override
     public String getId() {
         String thisId = id;
+        if (thisId == null) {
+            thisId = TradableId.toString(numericId);
+            id = thisId;
+        }
         return thisId;
     }
 
+    /**
+     * Public Get method returns the numeric system id of this tradable.
+     *
+     * @return numeric System ID
+     */
+    @Override
+    public long getNumericId() {
+        return numericId;
+    }
+
     /**
      * Public To String method to return a string representation of the Tradable
      * values.
@@ -330,7 +366,7 @@ public class Trader implements Tradable {
     public String toString() {
         StringBuilder sb = new StringBuilder();
         sb.append(String.format("%s order: %s %s %s at %s", user, side, remainingVolume, product, price.toString()));
-        sb.append(String.format(" (Original Vol: %s, CXL'd Vol: %s), ID: %s", originalVolume, cancelledVolume, id));
+        sb.append(String.format(" (Original Vol: %s, CXL'd Vol: %s), ID: %s", originalVolume, cancelledVolume, getId()));
         return sb.toString();
     }
 }
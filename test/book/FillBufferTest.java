@@ -0,0 +1,322 @@
+/*
+ * FillBufferTest.java
+ */
+package book;
+
+import client.TradableUserData;
+import client.User;
+import constants.BookSide;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import price.Price;
+import price.PriceFactory;
+import publishers.AmendMessage;
+import publishers.CancelMessage;
+import publishers.FillMessage;
+import publishers.MessagePublisher;
+import tradable.Order;
+import tradable.TradableDTO;
+
+/**
+ * Tests of the FillBuffer, checking the fill messages it publishes and that
+ * trading through a book side does not allocate per fill once warm.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public class FillBufferTest {
+
+    /**
+     * Symbol used for the fills, which is not a product.
+     */
+    private static final String PRODUCT = "FBTST";
+    /**
+     * Volume of each aggressor order.
+     */
+    private static final int AGGRESSOR_VOLUME = 10;
+    /**
+     * Bytes a trade may allocate, for remembering the aggressor once it has
+     * traded out, which is less than one fill message.
+     */
+    private static final int RETIRE_BYTES = 64;
+    /**
+     * Number of trades or publishes before allocation is measured.
+     */
+    private static final int WARM_UP = 20000;
+    /**
+     * Number of trades or publishes while allocation is measured.
+     */
+    private static final int ROUNDS = 100000;
+    /**
+     * User subscribed for the fill messages.
+     */
+    private RecordingUser user;
+    /**
+     * Buy order filled.
+     */
+    private Order buy;
+    /**
+     * Sell order filled.
+     */
+    private Order sell;
+
+    /**
+     * Subscribes a user for the messages of the test symbol and makes two
+     * orders to fill.
+     *
+     * @throws Exception
+     */
+    @Before
+    public void setUp() throws Exception {
+        user = new RecordingUser("FBTUSER");
+        MessagePublisher.getInstance().subscribe(user, PRODUCT);
+        buy = new Order("FBTUSER", PRODUCT, PriceFactory.makeLimitPrice(1000), 500, BookSide.BUY);
+        sell = new Order("FBTUSER", PRODUCT, PriceFactory.makeLimitPrice(1000), 500, BookSide.SELL);
+    }
+
+    /**
+     * Unsubscribes the user.
+     *
+     * @throws Exception
+     */
+    @After
+    public void tearDown() throws Exception {
+        MessagePublisher.getInstance().unSubscribe(user, PRODUCT);
+    }
+
+    /**
+     * Each fill is published in order with the volume it left in the details.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void publishesEachFillInOrder() throws Exception {
+        FillBuffer fills = new FillBuffer();
+        fills.addFill(sell, PriceFactory.makeLimitPrice(1000), 100, 400);
+        fills.addAggressorFill(buy, PriceFactory.makeLimitPrice(1000), 100, 400);
+        fills.addFill(sell, PriceFactory.makeLimitPrice(1001), 50, 350);
+        fills.addAggressorFill(buy, PriceFactory.makeLimitPrice(1001), 50, 350);
+        user.keepDetails = true;
+        fills.publish();
+        assertEquals(4, user.fills);
+        assertEquals("User: FBTUSER, Product: FBTST, Fill Price: $10.00, Fill Volume: 100, Details: leaving 400, Side: SELL", user.details.get(0));
+        assertEquals("User: FBTUSER, Product: FBTST, Fill Price: $10.00, Fill Volume: 100, Details: leaving 400, Side: BUY", user.details.get(1));
+        assertEquals("User: FBTUSER, Product: FBTST, Fill Price: $10.01, Fill Volume: 50, Details: leaving 350, Side: SELL", user.details.get(2));
+        assertEquals("User: FBTUSER, Product: FBTST, Fill Price: $10.01, Fill Volume: 50, Details: leaving 350, Side: BUY", user.details.get(3));
+    }
+
+    /**
+     * Once warm, trading a small order against a large resting order, through
+     * the book side and its trade processor, allocates less than one byte per
+     * fill published, apart from remembering the retired aggressor.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void tradeDoesNotAllocatePerFill() throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+        ProductBook book = new ProductBook(PRODUCT);
+        book.setCancelRetention(1, 0);
+        ProductBookSide sellSide = new ProductBookSide(book, BookSide.SELL);
+        sellSide.addToBook(new Order("FBTUSER", PRODUCT, PriceFactory.makeLimitPrice(1000), Integer.MAX_VALUE, BookSide.SELL));
+        Order aggressor = new Order("FBTUSER", PRODUCT, PriceFactory.makeLimitPrice(1000), AGGRESSOR_VOLUME, BookSide.BUY);
+        for (int i = 0; i < WARM_UP; i++) {
+            trade(sellSide, aggressor);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ROUNDS; i++) {
+            trade(sellSide, aggressor);
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertEquals((long) (WARM_UP + ROUNDS) * 2, user.fills);
+        assertEquals(Integer.MAX_VALUE - (long) (WARM_UP + ROUNDS) * AGGRESSOR_VOLUME, sellSide.topOfBookVolume());
+        assertTrue("Allocated " + allocated + " bytes in " + ROUNDS + " trades", allocated < (long) ROUNDS * RETIRE_BYTES);
+    }
+
+    /**
+     * Private method to trade the aggressor, with its full volume again,
+     * against the book side.
+     *
+     * @param sellSide book side traded against
+     * @param aggressor order traded
+     * @throws Exception
+     */
+    private static void trade(ProductBookSide sellSide, Order aggressor) throws Exception {
+        aggressor.setCancelledVolume(0);
+        aggressor.setRemainingVolume(AGGRESSOR_VOLUME);
+        FillBuffer fills = sellSide.tryTrade(aggressor);
+        assertEquals(2, fills.size());
+    }
+
+    /**
+     * User that counts the fill messages it gets, and keeps their details
+     * when asked to.
+     */
+    private static class RecordingUser implements User {
+
+        private final String name;
+        private long fills;
+        private boolean keepDetails;
+        private final ArrayList<String> details = new ArrayList<>();
+
+        RecordingUser(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String getUserName() {
+            return name;
+        }
+
+        @Override
+        public void acceptMessage(FillMessage fm) {
+            fills++;
+            if (keepDetails) {
+                details.add(fm.toString());
+            }
+        }
+
+        @Override
+        public void acceptLastSale(String product, Price p, int v) {
+        }
+
+        @Override
+        public void acceptMessage(CancelMessage cm) {
+        }
+
+        @Override
+        public void acceptMessage(AmendMessage am) {
+        }
+
+        @Override
+        public void acceptMarketMessage(String message) {
+        }
+
+        @Override
+        public void acceptTicker(String product, Price p, char direction) {
+        }
+
+        @Override
+        public void acceptCurrentMarket(String product, Price bp, int bv, Price sp, int sv) {
+        }
+
+        @Override
+        public void acceptIndicativeOpen(String product, Price p, int v) {
+        }
+
+        @Override
+        public void connect() {
+        }
+
+        @Override
+        public void disConnect() {
+        }
+
+        @Override
+        public void showMarketDisplay() {
+        }
+
+        @Override
+        public String submitOrder(String product, Price price, int volume, BookSide side) {
+            return null;
+        }
+
+        @Override
+        public void submitOrderCancel(String product, BookSide side, String orderId) {
+        }
+
+        @Override
+        public void submitQuote(String product, Price buyPrice, int buyVolume, Price sellPrice, int sellVolume) {
+        }
+
+        @Override
+        public void submitQuoteCancel(String product) {
+        }
+
+        @Override
+        public void subscribeCurrentMarket(String product) {
+        }
+
+        @Override
+        public void subscribeLastSale(String product) {
+        }
+
+        @Override
+        public void subscribeMessages(String product) {
+        }
+
+        @Override
+        public void subscribeTicker(String product) {
+        }
+
+        @Override
+        public void subscribeIndicativeOpen(String product) {
+        }
+
+        @Override
+        public Price getAllStockValue() {
+            return null;
+        }
+
+        @Override
+        public Price getAccountCosts() {
+            return null;
+        }
+
+        @Override
+        public Price getNetAccountValue() {
+            return null;
+        }
+
+        @Override
+        public String[][] getBookDepth(String product) {
+            return null;
+        }
+
+        @Override
+        public String getMarketState() {
+            return null;
+        }
+
+        @Override
+        public ArrayList<TradableUserData> getOrderIds() {
+            return null;
+        }
+
+        @Override
+        public ArrayList<String> getProductList() {
+            return null;
+        }
+
+        @Override
+        public Price getStockPositionValue(String sym) {
+            return null;
+        }
+
+        @Override
+        public int getStockPositionVolume(String product) {
+            return 0;
+        }
+
+        @Override
+        public ArrayList<String> getHoldings() {
+            return null;
+        }
+
+        @Override
+        public ArrayList<TradableDTO> getOrdersWithRemainingQty(String product) {
+            return null;
+        }
+    }
+}
+//end of file
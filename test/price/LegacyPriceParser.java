@@ -0,0 +1,121 @@
+/*
+ * LegacyPriceParser.java
+ */
+package price;
+
+import exceptions.ExceptionHandler;
+
+/**
+ * This class holds the String parsing that PriceFactory#makeLimitPrice(String)
+ * did before PriceParser replaced it, unchanged, so tests can check that the
+ * new parser gives the same value for the same text and rejects the same
+ * text.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+final class LegacyPriceParser {
+
+    /**
+     * Private Constructor Method, this class only has static methods.
+     */
+    private LegacyPriceParser() {
+    }
+
+    /**
+     * This method will return the value in cents of a price String, worked
+     * out the way PriceFactory#makeLimitPrice(String) used to.
+     *
+     * @param value of price
+     * @return value in cents
+     * @throws Exception if the old parser rejected the text
+     */
+    static long parse(String value) throws Exception {
+        long numValue = 0;
+        String newValue, dollars, cents;
+        String[] splitValue;
+        boolean isNegative = false;
+
+        //string algorithm for transfer to long value
+        if (value.contains("$")) {
+            newValue = value.replace("$", "");
+            value = newValue;
+        }
+
+        if (value.contains(",")) {
+            newValue = value.replace(",", "");
+            value = newValue;
+        }
+
+        if (value.contains("-")) {
+            isNegative = true;
+            newValue = value.replace("-", "");
+            value = newValue;
+        }
+
+        if (value.contains(".")) {
+            if (value.startsWith(".")) {
+                newValue = value.replace(".", "");
+                value = newValue.substring(0, 2);
+                if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
+                    numValue = Long.valueOf(value);
+                }
+            } else if (value.endsWith(".")) {
+                newValue = value.replace(".", "");
+                value = newValue.concat("00");
+                if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
+                    numValue = Long.valueOf(value);
+                }
+            } else {
+                splitValue = value.split("\\.");
+                dollars = splitValue[0];
+                cents = splitValue[1];
+                if (dollars.isEmpty() && cents.isEmpty()) {
+                    throw new Exception("THIS IS A SERIOUS ERROR!");
+                } else if (Long.valueOf(dollars) != 0) {
+                    if (ExceptionHandler.checkPriceInput(dollars, "Price.PriceFactory#makeLimitPrice.")) {
+                        numValue = Long.valueOf(dollars);
+                        numValue = (numValue * 100);
+                    }
+                }
+                if (cents.isEmpty()) {
+                    newValue = cents.concat("00");
+                    cents = newValue;
+                    value = cents;
+                    if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
+                        numValue = (numValue + Long.valueOf(value));
+                    }
+                } else if (cents.length() == 1) {
+                    newValue = cents.concat("0");
+                    value = newValue;
+                    if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
+                        numValue = (numValue + Long.valueOf(value));
+                    }
+                } else if (cents.length() == 2) {
+                    value = cents;
+                    if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
+                        numValue = (numValue + Long.valueOf(value));
+                    }
+                } else if (cents.length() >= 3) {
+                    newValue = cents.substring(0, 2);
+                    value = newValue;
+                    if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
+                        numValue = (numValue + Long.valueOf(value));
+                    }
+                }
+            }
+        } else {
+            if (ExceptionHandler.checkPriceInput(value, "Price.PriceFactory#makeLimitPrice.")) {
+                numValue = Long.valueOf(value);
+                numValue = (numValue * 100);
+            }
+        }
+
+        if (isNegative == true) {
+            numValue = (numValue * -1);
+        }
+
+        return numValue;
+    }
+}
+//end of file
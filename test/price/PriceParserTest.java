@@ -0,0 +1,151 @@
+/*
+ * PriceParserTest.java
+ */
+package price;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests that PriceParser reads every price text the same way as the old
+ * String parsing of PriceFactory, kept in LegacyPriceParser: the same value
+ * in cents for text it accepted and an exception for text it rejected. Each
+ * text is parsed as a String, as another kind of CharSequence, and as a
+ * range of single byte characters.
+ *
+ * @author Kevin Patrick Westropp
+ * @version StockExVirtuoso.Version.1.0
+ */
+public class PriceParserTest {
+
+    /**
+     * Result given for text that is rejected.
+     */
+    private static final String REJECTED = "rejected";
+    /**
+     * Characters every short text is made from: digits, the characters the
+     * parsers skip or treat specially, and some that are never valid.
+     */
+    private static final char[] ALPHABET = {'0', '1', '9', '.', '$', '-', ',', '+', 'a', ' ', '٠'};
+    /**
+     * Longest text made from the alphabet.
+     */
+    private static final int MAX_LENGTH = 5;
+    /**
+     * Number of random values formatted in each style.
+     */
+    private static final int RANDOM_VALUES = 200000;
+
+    /**
+     * Every text of up to MAX_LENGTH characters from the alphabet is read the
+     * same way, which covers '$', ',', '-', a leading '.', a second '.' and
+     * extra digits of cents in every position.
+     */
+    @Test
+    public void everyShortTextMatchesLegacy() {
+        checkAll(new StringBuilder(), MAX_LENGTH);
+    }
+
+    /**
+     * Random prices, with and without '$' and ',', with extra digits of
+     * cents, negative, with a leading '.' and with a second '.', are read the
+     * same way.
+     */
+    @Test
+    public void randomPricesMatchLegacy() {
+        Random random = new Random(42);
+        for (int i = 0; i < RANDOM_VALUES; i++) {
+            double d = (random.nextDouble() - 0.3) * Math.pow(10, random.nextInt(12));
+            String plain = String.format(Locale.US, "%.2f", d);
+            check(plain);
+            check(String.format(Locale.US, "$%,.2f", d));
+            check(String.format(Locale.US, "%.4f", d));
+            check(String.format(Locale.US, "%.1f", d));
+            check(String.format(Locale.US, "%.0f.", d));
+            check(plain + "." + random.nextInt(100));
+            check(plain.replace("-", "") + "-");
+            check(plain.substring(plain.indexOf('.')));
+            check(Long.toString(random.nextLong()));
+        }
+    }
+
+    /**
+     * Text at the edges of what either parser handles is read the same way.
+     */
+    @Test
+    public void edgeCasesMatchLegacy() {
+        String[] edges = {"", ".", "..", ".5", ".05", ".055", "-.05", "$.05", "5.", "5..", "1..5", "1.2.3", "1.2.3-",
+            "0.", "0.0", "00.01", "-0", "-", "$", ",", "$-$", "$1,234.56", "1,2,3.4,5", "-$1,234.567",
+            "+", "+.", "+5", "+0.5", "+5.5", "+.5", "0+.5", " 1", "1 ", "1.0a", "１.00", "٠.10",
+            "9223372036854775807", "9223372036854775808", "92233720368547758.07", "92233720368547758.",
+            "922337203685477580.", "99999999999999999999.5", "-9223372036854775808"};
+        for (String edge : edges) {
+            check(edge);
+        }
+    }
+
+    /**
+     * Private method to check every text made by adding characters from the
+     * alphabet to the text given, up to a length.
+     *
+     * @param text so far
+     * @param maxLength longest text checked
+     */
+    private static void checkAll(StringBuilder text, int maxLength) {
+        check(text.toString());
+        if (text.length() == maxLength) {
+            return;
+        }
+        for (char c : ALPHABET) {
+            text.append(c);
+            checkAll(text, maxLength);
+            text.setLength(text.length() - 1);
+        }
+    }
+
+    /**
+     * Private method to check that PriceParser reads a text the same way as
+     * the legacy parser, as a String, as a StringBuilder and, if every
+     * character fits in a byte, as part of a byte array.
+     *
+     * @param text of price
+     */
+    private static void check(String text) {
+        String expected;
+        try {
+            expected = Long.toString(LegacyPriceParser.parse(text));
+        } catch (Exception ex) {
+            expected = REJECTED;
+        }
+        String actual;
+        try {
+            actual = Long.toString(PriceParser.parse(text));
+        } catch (Exception ex) {
+            actual = REJECTED;
+        }
+        assertEquals("String [" + text + "]", expected, actual);
+        try {
+            actual = Long.toString(PriceParser.parse(new StringBuilder(text)));
+        } catch (Exception ex) {
+            actual = REJECTED;
+        }
+        assertEquals("StringBuilder [" + text + "]", expected, actual);
+        boolean singleByte = true;
+        for (int i = 0; i < text.length(); i++) {
+            singleByte &= text.charAt(i) < 256;
+        }
+        if (singleByte) {
+            byte[] bytes = ("xx" + text + "yy").getBytes(StandardCharsets.ISO_8859_1);
+            try {
+                actual = Long.toString(PriceParser.parse(bytes, 2, bytes.length - 4));
+            } catch (Exception ex) {
+                actual = REJECTED;
+            }
+            assertEquals("bytes [" + text + "]", expected, actual);
+        }
+    }
+}
+//end of file